@@ -0,0 +1,89 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.monitoring.SqlStatementCounter;
+import study.querydsl.monitoring.StatementScope;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원 page건을 조회하고 각 회원의 팀을 지연로딩할때 batchFetchSize(hibernate.default_batch_fetch_size)별 비교
+ * 회원마다 팀이 달라서 배치 페치가 없으면(1) 1 + page번 select 된다.
+ * 2차 캐시를 끄고 실행하므로 매번 DB에서 읽는다.
+ * statements / pages 가 호출 한번당 실행된 SQL 수 (기대값 1 + ceil(page / batchFetchSize))
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BatchFetchBenchmark {
+
+    @Param({"1000"})
+    int members;
+
+    @Param({"1000"})
+    int page;
+
+    @Param({"1", "16", "100", "1000"})
+    int batchFetchSize;
+
+    private BenchmarkContext context;
+    private TransactionTemplate transactionTemplate;
+    private JPAQueryFactory queryFactory;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class StatementCounts {
+        public long statements;
+        public long pages;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(members, members,
+                "--spring.jpa.properties.hibernate.default_batch_fetch_size=" + batchFetchSize,
+                "--spring.jpa.properties.hibernate.cache.use_second_level_cache=false");
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        queryFactory = context.getBean(JPAQueryFactory.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int loadTeams(StatementCounts counts) {
+        Integer loaded = transactionTemplate.execute(status -> {
+            try (StatementScope scope = SqlStatementCounter.open("batchFetch")) {
+                List<Member> result = queryFactory
+                        .selectFrom(member)
+                        .limit(page)
+                        .fetch();
+                int names = 0;
+                for (Member m : result) {
+                    names += m.getTeam().getName().length(); // 지연로딩
+                }
+                counts.statements += scope.getTotal();
+                return names;
+            }
+        });
+        counts.pages++;
+        return loaded;
+    }
+}
@@ -0,0 +1,63 @@
+package study.querydsl.benchmark;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.seed.MemberSeeder;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 벤치마크용 스프링 컨텍스트. 매번 새 인메모리 H2를 띄우고 members건의 회원을 teams개 팀에 나눠 넣는다.
+ * 회원 i는 i % teams 번째 팀(teamA, teamB, team2, ...), 나이 i % 100
+ */
+public class BenchmarkContext implements AutoCloseable {
+
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkContext(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    public static BenchmarkContext start(int members, int teams, String... extraArgs) {
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "--spring.profiles.active=benchmark",
+                "--spring.main.web-application-type=none",
+                "--spring.main.banner-mode=off",
+                "--spring.datasource.url=jdbc:h2:mem:benchmark" + System.nanoTime() + ";DB_CLOSE_DELAY=-1",
+                "--spring.jpa.properties.hibernate.format_sql=false",
+                "--decorator.datasource.enabled=false", // p6spy 로그 끔
+                "--logging.level.root=warn",
+                "--logging.level.org.hibernate.SQL=warn"));
+        args.addAll(Arrays.asList(extraArgs));
+
+        BenchmarkContext benchmarkContext = new BenchmarkContext(
+                SpringApplication.run(QuerydslApplication.class, args.toArray(new String[0])));
+        benchmarkContext.seed(members, teams);
+        return benchmarkContext;
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public EntityManager entityManager() {
+        return SharedEntityManagerCreator.createSharedEntityManager(getBean(EntityManagerFactory.class));
+    }
+
+    private void seed(int members, int teams) {
+        getBean(MemberSeeder.class).seed(members, teams, Runtime.getRuntime().availableProcessors(), SEED_BATCH_SIZE, 0);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
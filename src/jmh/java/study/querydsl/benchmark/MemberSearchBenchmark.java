@@ -0,0 +1,73 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 같은 회원 검색을 동적쿼리 구현 방식별로 비교
+ * 조건: teamName = teamB, 20 <= age <= 40 (teams개 팀 중 한 팀의 약 21%)
+ * - builderSearch: 요청마다 BooleanBuilder로 쿼리를 만들고 JPQL로 직렬화
+ * - whereParamsSearch: 요청마다 where 파라미터로 쿼리를 만들고 JPQL로 직렬화
+ * - precompiledSearch: 조건 모양별로 미리 직렬화한 JPQL에 파라미터만 바인딩 (MemberSearchQueryCache)
+ * 모두 MemberJpaRepository의 같은 읽기 전용 트랜잭션과 검색 메트릭(SearchMetrics) 안에서 실행한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MemberSearchBenchmark {
+
+    @Param({"10000"})
+    int members;
+
+    @Param({"10"})
+    int teams;
+
+    private BenchmarkContext context;
+    private MemberJpaRepository memberJpaRepository;
+    private MemberSearchCondition condition;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(members, teams);
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+
+        condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(40);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> builderSearch() {
+        return memberJpaRepository.searchByBuilder(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> whereParamsSearch() {
+        return memberJpaRepository.searchByWhereParams(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> precompiledSearch() {
+        return memberJpaRepository.search(condition);
+    }
+}
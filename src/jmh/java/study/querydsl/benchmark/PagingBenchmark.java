@@ -0,0 +1,68 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * offset 페이징(searchPageComplex)과 지연 조인 페이징(searchPageDeferredJoin) 비교
+ * 둘 다 order by member.id 로 같은 결과를 조회한다.
+ * 카운트는 같은 카운트 캐시를 쓰므로 첫 호출 이후에는 컨텐츠 조회 비용만 비교된다.
+ * offset은 size의 배수여야 함
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PagingBenchmark {
+
+    @Param({"100000"})
+    int members;
+
+    @Param({"0", "1000", "10000", "90000"})
+    int offset;
+
+    @Param({"20"})
+    int size;
+
+    private BenchmarkContext context;
+    private MemberRepository memberRepository;
+    private MemberSearchCondition condition;
+    private PageRequest pageRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(members, 10);
+        memberRepository = context.getBean(MemberRepository.class);
+        condition = new MemberSearchCondition(); // 조건이 없어야 큰 offset까지 결과가 있음
+        pageRequest = PageRequest.of(offset / size, size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> offsetPaging() {
+        return memberRepository.searchPageComplex(condition, pageRequest);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> deferredJoinPaging() {
+        return memberRepository.searchPageDeferredJoin(condition, pageRequest);
+    }
+}
@@ -0,0 +1,84 @@
+package study.querydsl.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberTeamColumnsDto;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 회원 페이지 응답 형식별 직렬화 처리량과 크기 비교 (DB 없이 메모리의 페이지만 직렬화)
+ * bytes / messages 가 응답 한건의 크기
+ * 컬럼 방식은 MemberTeamColumnsDto 변환 비용까지 포함
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SerializationBenchmark {
+
+    @Param({"20", "1000"})
+    int rows;
+
+    @Param({"10"})
+    int teams;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CBORMapper cborMapper = new CBORMapper();
+    private Page<MemberTeamDto> page;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PayloadSize {
+        public long bytes;
+        public long messages;
+
+        byte[] record(byte[] payload) {
+            bytes += payload.length;
+            messages++;
+            return payload;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        //BenchmarkContext와 같은 분포: 회원 i는 team(i % teams), 나이 i % 100
+        List<MemberTeamDto> content = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            long teamId = i % teams;
+            content.add(new MemberTeamDto((long) i, "member" + i, i % 100, teamId, "team" + teamId));
+        }
+        page = new PageImpl<>(content, PageRequest.of(0, rows), rows * 100L);
+    }
+
+    @Benchmark
+    public byte[] pageJson(PayloadSize size) throws JsonProcessingException {
+        return size.record(objectMapper.writeValueAsBytes(page));
+    }
+
+    @Benchmark
+    public byte[] columnarJson(PayloadSize size) throws JsonProcessingException {
+        return size.record(objectMapper.writeValueAsBytes(MemberTeamColumnsDto.of(page)));
+    }
+
+    @Benchmark
+    public byte[] columnarCbor(PayloadSize size) throws JsonProcessingException {
+        return size.record(cborMapper.writeValueAsBytes(MemberTeamColumnsDto.of(page)));
+    }
+}
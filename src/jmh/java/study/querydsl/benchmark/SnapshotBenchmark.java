@@ -0,0 +1,80 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.event.EntityChangedEvent;
+import study.querydsl.repository.MemberCountCache;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.snapshot.MemberSnapshot;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 나이 범위 + 팀 조건 검색을 메모리 컬럼 스냅샷(MemberSnapshot)과 DB 지연 조인 페이징으로 비교
+ * 카운트 캐시를 매번 비워서 DB 쪽도 카운트 쿼리까지 포함해서 측정한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SnapshotBenchmark {
+
+    @Param({"1000000"})
+    int members;
+
+    @Param({"0", "10000"})
+    int offset;
+
+    @Param({"20"})
+    int size;
+
+    private BenchmarkContext context;
+    private MemberRepository memberRepository;
+    private MemberSnapshot snapshot;
+    private MemberCountCache countCache;
+    private MemberSearchCondition condition;
+    private PageRequest pageRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(members, 10, "--member.snapshot.enabled=true");
+        memberRepository = context.getBean(MemberRepository.class);
+        countCache = context.getBean(MemberCountCache.class);
+        snapshot = context.getBean(MemberSnapshot.class);
+        snapshot.refresh(); // 적재 후 다시 만듦
+
+        condition = new MemberSearchCondition();
+        condition.setTeamName("team3");
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(60);
+        pageRequest = PageRequest.of(offset / size, size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> snapshot() {
+        return snapshot.searchPage(condition, pageRequest);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> database() {
+        countCache.invalidate(EntityChangedEvent.bulk(Member.class));
+        return memberRepository.searchPageDeferredJoin(condition, pageRequest);
+    }
+}
@@ -3,7 +3,9 @@ package study.querydsl;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
+import study.querydsl.event.ChangeTrackingJPAQueryFactory;
 
 import javax.persistence.EntityManager;
 
@@ -15,7 +17,7 @@ public class QuerydslApplication {
 	}
 
 	@Bean
-	public JPAQueryFactory jpaQueryFactory(EntityManager em) {
-		return new JPAQueryFactory(em);
+	public JPAQueryFactory jpaQueryFactory(EntityManager em, ApplicationEventPublisher publisher) {
+		return new ChangeTrackingJPAQueryFactory(em, publisher); // 벌크 연산시 변경 이벤트 발행
 	}
 }
@@ -1,16 +1,30 @@
 package study.querydsl.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberSupportRepository;
+import study.querydsl.repository.support.KeysetSlice;
+import study.querydsl.web.MemberResponseCache;
 
-import java.util.List;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 
 @RestController
 @RequiredArgsConstructor
@@ -18,19 +32,98 @@ public class MemberController {
 
     private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final MemberSupportRepository memberSupportRepository;
+    private final ObjectMapper objectMapper;
+    private final MemberResponseCache responseCache;
 
+    @Value("${spring.data.web.pageable.max-page-size:2000}")
+    private int maxPageSize;
+
+    //v1 ~ v3은 같은 조건, 페이지의 직렬화된 응답을 캐시하고 데이터 버전을 ETag로 내려줌 (If-None-Match면 304)
     @GetMapping("/v1/members")
-    public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
-        return memberJpaRepository.search(condition);
+    public ResponseEntity<byte[]> searchMemberV1(MemberSearchCondition condition, WebRequest request) {
+        return responseCache.respond(request, "v1", condition, null,
+                () -> memberJpaRepository.search(condition));
+    }
+
+    //v1과 같은 조회를 한 줄에 한 건씩 JSON(NDJSON)으로 바로 써서 결과 건수와 상관없이 메모리 사용량이 일정함
+    @GetMapping("/v1/members/stream")
+    public void streamMemberV1(MemberSearchCondition condition, HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        OutputStream out = response.getOutputStream();
+        ObjectWriter writer = objectMapper.writerFor(MemberTeamDto.class);
+
+        memberJpaRepository.searchStream(condition, dto -> {
+            try {
+                out.write(writer.writeValueAsBytes(dto));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 
     @GetMapping("/v2/members")
-    public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageSimple(condition, pageable);
+    public ResponseEntity<byte[]> searchMemberV2(MemberSearchCondition condition, Pageable pageable, WebRequest request) {
+        return responseCache.respond(request, "v2", condition, pageable,
+                () -> memberRepository.searchPageSimple(condition, pageable));
     }
 
+    //세 방식 모두 회원 id 순서라 결과가 같으므로 같은 캐시 항목 사용, deferredJoin과 concurrentCount는 같이 쓸 수 없음(400)
     @GetMapping("/v3/members")
-    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
+    public ResponseEntity<byte[]> searchMemberV3(MemberSearchCondition condition, Pageable pageable,
+                                                 @RequestParam(defaultValue = "false") boolean deferredJoin,
+                                                 @RequestParam(defaultValue = "false") boolean concurrentCount,
+                                                 WebRequest request) {
+        if (deferredJoin && concurrentCount) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "deferredJoin and concurrentCount cannot be combined");
+        }
+        return responseCache.respond(request, "v3", condition, pageable,
+                () -> searchPageV3(condition, pageable, deferredJoin, concurrentCount));
+    }
+
+    //카운트 없이 다음 페이지 여부(hasNext)만 내려줌, 무한 스크롤용. 회원 id 순서로만 조회하므로 정렬 파라미터는 400
+    @GetMapping("/v5/members")
+    public ResponseEntity<byte[]> searchMemberV5(MemberSearchCondition condition, Pageable pageable, WebRequest request) {
+        if (pageable.getSort().isSorted()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "sort is not supported, members are ordered by id");
+        }
+        return responseCache.respond(request, "v5", condition, pageable,
+                () -> memberRepository.searchSlice(condition, pageable));
+    }
+
+    //메모리 컬럼 스냅샷에서 조회 (member.snapshot.enabled=true), 스냅샷을 쓸 수 없으면 DB 지연 조인 페이징. 회원 id 순서
+    @GetMapping("/v6/members")
+    public ResponseEntity<byte[]> searchMemberV6(MemberSearchCondition condition, Pageable pageable, WebRequest request) {
+        return responseCache.respond(request, "v6", condition, pageable,
+                () -> memberRepository.searchPageSnapshot(condition, pageable));
+    }
+
+    private Page<MemberTeamDto> searchPageV3(MemberSearchCondition condition, Pageable pageable,
+                                             boolean deferredJoin, boolean concurrentCount) {
+        //deferredJoin=true면 회원 id를 먼저 페이징한 뒤 해당 id만 조인해서 조회
+        if (deferredJoin) {
+            return memberRepository.searchPageDeferredJoin(condition, pageable);
+        }
+        //concurrentCount=true면 카운트 쿼리를 컨텐츠 쿼리와 동시에 실행
+        if (concurrentCount) {
+            return memberRepository.searchPageConcurrent(condition, pageable);
+        }
         return memberRepository.searchPageComplex(condition, pageable);
     }
+
+    /**
+     * offset 대신 이전 응답의 nextCursor로 다음 페이지 조회
+     * 잘못된 커서나 1보다 작은 size는 400, size는 다른 엔드포인트의 Pageable처럼 max-page-size로 자름
+     */
+    @GetMapping("/v4/members")
+    public KeysetSlice<MemberTeamDto> searchMemberV4(MemberSearchCondition condition,
+                                                    @RequestParam(required = false) String cursor,
+                                                    @RequestParam(defaultValue = "20") int size) {
+        if (size < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be greater than zero");
+        }
+        return memberSupportRepository.searchKeyset(condition, cursor, Math.min(size, maxPageSize));
+    }
 }
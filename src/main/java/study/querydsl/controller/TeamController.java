@@ -0,0 +1,22 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.TeamStatisticsDto;
+import study.querydsl.statistics.TeamStatistics;
+
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+public class TeamController {
+
+    private final TeamStatistics teamStatistics;
+
+    //팀별 회원 수, 평균/최소/최대 나이, 회원 테이블을 집계하지 않고 미리 갱신된 값을 반환
+    @GetMapping("/teams/stats")
+    public List<TeamStatisticsDto> teamStats() {
+        return teamStatistics.findAll();
+    }
+}
@@ -1,44 +0,0 @@
-package study.querydsl.controller;
-
-import lombok.RequiredArgsConstructor;
-import org.springframework.context.annotation.Profile;
-import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
-import study.querydsl.entity.Member;
-import study.querydsl.entity.Team;
-
-import javax.annotation.PostConstruct;
-import javax.persistence.EntityManager;
-import javax.persistence.PersistenceContext;
-
-@Profile("local") // local 프로필일때만 동작함
-@Component
-@RequiredArgsConstructor
-public class initMember {
-    private final initMemberService initMemberService;
-
-    @PostConstruct
-    public void init() {
-        initMemberService.init();
-    }
-
-    @Component
-    static class initMemberService {
-        @PersistenceContext
-        private EntityManager em;
-
-        //스프링 라이프사이클 문제로 @PostConstruct와 @Transactional이 같이동작하지 않으므로 나눔
-        @Transactional
-        public void init() {
-            Team teamA = new Team("teamA");
-            Team teamB = new Team("teamB");
-            em.persist(teamA);
-            em.persist(teamB);
-
-            for (int i = 0; i < 100; i++) {
-                Team selectedTeam = i % 2 == 0 ? teamA : teamB;
-                em.persist(new Member("member" + i, i, selectedTeam));
-            }
-        }
-    }
-}
@@ -0,0 +1,38 @@
+package study.querydsl.datasource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * replica.enabled=true 일때 spring.datasource(primary) 대신 읽기 전용 트랜잭션을 복제본으로 보내는 DataSource를 등록한다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "replica.enabled", havingValue = "true")
+@EnableConfigurationProperties(ReplicaProperties.class)
+public class ReplicaDataSourceConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties properties, ReplicaProperties replica) {
+        DataSource primary = properties.initializeDataSourceBuilder().build();
+        List<DataSource> replicas = replica.getUrls().stream()
+                .map(url -> properties.initializeDataSourceBuilder().url(url).build())
+                .collect(Collectors.toList());
+        return new ReplicaRoutingDataSource(primary, replicas, replica.getMaxLag(), replica.getHeartbeatInterval());
+    }
+
+    //커넥션을 실제로 쓸 때 라우팅해야 트랜잭션의 readOnly 여부가 반영됨
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
@@ -0,0 +1,28 @@
+package study.querydsl.datasource;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 읽기 전용 복제본 설정. 계정 등 나머지 설정은 spring.datasource 를 그대로 사용한다.
+ */
+@Getter
+@Setter
+@ConfigurationProperties("replica")
+public class ReplicaProperties {
+
+    private boolean enabled;
+
+    private List<String> urls = new ArrayList<>();
+
+    //복제 지연이 이보다 크면 그 복제본으로 보내지 않음 (heartbeat-interval보다 커야 함)
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    //primary에 heartbeat를 쓰고 복제본의 지연을 확인하는 주기
+    private Duration heartbeatInterval = Duration.ofSeconds(1);
+}
@@ -0,0 +1,217 @@
+package study.querydsl.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import study.querydsl.event.EntityChangedEvent;
+import study.querydsl.event.TransactionChanges;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 읽기 전용 트랜잭션(@Transactional(readOnly = true))은 복제본으로, 나머지는 primary로 보내는 DataSource
+ * 트랜잭션 시작 시점에는 readOnly 여부가 아직 동기화되지 않았으므로 LazyConnectionDataSourceProxy로 감싸서 사용해야 한다.
+ *
+ * 복제 지연은 primary의 replica_heartbeat 테이블에 주기적으로 쓴 시각이 복제본에 언제 보이는지로 잰다.
+ * 지연이 maxLag보다 크거나 확인에 실패한 복제본은 제외하고, 쓸 수 있는 복제본이 없으면 primary에서 읽는다.
+ *
+ * 엔티티 변경을 flush한 트랜잭션이 커밋되면 같은 세션(HTTP 세션, 요청 밖에서는 스레드)은 그 뒤에 쓴 heartbeat가 보이는
+ * 복제본에서만 읽는다. (read-your-writes) 그런 복제본이 없으면 primary에서 읽는다.
+ * 변경 없이 끝난 쓰기 트랜잭션이나 다른 세션의 읽기는 기다리지 않으므로 최대 maxLag 만큼 이전 데이터를 읽을 수 있다.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    static final String PRIMARY = "primary";
+    private static final String LAST_WRITE_ATTRIBUTE = ReplicaRoutingDataSource.class.getName() + ".LAST_WRITE";
+
+    private static final String CREATE_HEARTBEAT = "create table if not exists replica_heartbeat (id int primary key, beat bigint not null)";
+    private static final String WRITE_HEARTBEAT = "merge into replica_heartbeat (id, beat) key (id) values (1, ?)";
+    private static final String READ_HEARTBEAT = "select beat from replica_heartbeat where id = 1";
+
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas = new HashMap<>();
+    private final Duration maxLag;
+    private final Duration heartbeatInterval;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile List<HealthyReplica> healthyReplicas = new ArrayList<>();
+    private final Object writeKey = new Object(); // 현재 트랜잭션이 변경을 flush 했는지 (TransactionChanges)
+    private final ThreadLocal<Long> threadLastWrite = new ThreadLocal<>(); // 요청 밖(스케줄러, 테스트 등)의 마지막 커밋 시각
+    private ScheduledExecutorService scheduler;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration maxLag, Duration heartbeatInterval) {
+        this.primary = primary;
+        this.maxLag = maxLag;
+        this.heartbeatInterval = heartbeatInterval;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            this.replicas.put("replica-" + i, replicas.get(i));
+            targets.put("replica-" + i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        long writtenAt = lastWriteCommittedAt(); // 이 시각 이후의 heartbeat가 보이는 복제본만 사용
+        List<String> candidates = new ArrayList<>(replicas.size());
+        for (HealthyReplica replica : healthyReplicas) {
+            if (replica.beat > writtenAt) {
+                candidates.add(replica.key);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return PRIMARY; // 지연이 허용 범위 안이고 마지막 커밋까지 복제된 복제본이 없으면 primary에서 읽음
+        }
+        return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+    }
+
+    @EventListener
+    public void onChanged(EntityChangedEvent event) {
+        markWritten();
+    }
+
+    //현재 트랜잭션이 변경을 flush 했으면 커밋될때 그 시각을 세션에 기록
+    public void markWritten() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive() || TransactionChanges.isChanged(writeKey)) {
+            return; // 트랜잭션 밖(auto commit)의 쓰기는 추적하지 않음
+        }
+        TransactionChanges.markChanged(writeKey);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recordWrite(System.currentTimeMillis());
+            }
+        });
+    }
+
+    private long lastWriteCommittedAt() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        Object writtenAt = attributes != null
+                ? attributes.getAttribute(LAST_WRITE_ATTRIBUTE, RequestAttributes.SCOPE_SESSION)
+                : null;
+        if (writtenAt == null) {
+            writtenAt = threadLastWrite.get();
+        }
+        return writtenAt != null ? (Long) writtenAt : 0;
+    }
+
+    private void recordWrite(long writtenAt) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            try {
+                attributes.setAttribute(LAST_WRITE_ATTRIBUTE, writtenAt, RequestAttributes.SCOPE_SESSION);
+                return;
+            } catch (IllegalStateException e) {
+                log.debug("cannot record last write in session: {}", e.getMessage()); // 응답이 이미 커밋되어 세션을 만들 수 없음
+            }
+        }
+        threadLastWrite.set(writtenAt);
+    }
+
+    //heartbeat 쓰기와 지연 확인을 주기적으로 실행
+    public void start() {
+        createHeartbeatTable();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("replica-heartbeat-"));
+        scheduler.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    //시작할때 한번만 만듦
+    void createHeartbeatTable() {
+        try {
+            new JdbcTemplate(primary).execute(CREATE_HEARTBEAT);
+        } catch (RuntimeException e) {
+            log.warn("failed to create replica heartbeat table on primary: {}", e.getMessage());
+        }
+    }
+
+    void heartbeat() {
+        try {
+            new JdbcTemplate(primary).update(WRITE_HEARTBEAT, System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            log.warn("failed to write replica heartbeat to primary: {}", e.getMessage());
+        }
+        checkLag();
+    }
+
+    void checkLag() {
+        long now = System.currentTimeMillis();
+        List<HealthyReplica> healthy = new ArrayList<>();
+        replicas.forEach((key, replica) -> {
+            try {
+                Long beat = new JdbcTemplate(replica).queryForObject(READ_HEARTBEAT, Long.class);
+                long lag = now - (beat != null ? beat : 0);
+                if (lag <= maxLag.toMillis()) {
+                    healthy.add(new HealthyReplica(key, beat));
+                } else {
+                    log.debug("{} lags {}ms behind primary, reading from primary instead", key, lag);
+                }
+            } catch (RuntimeException e) {
+                log.debug("{} heartbeat check failed: {}", key, e.getMessage());
+            }
+        });
+        healthy.sort(Comparator.comparing(replica -> replica.key));
+        if (!keysOf(healthy).equals(keysOf(healthyReplicas))) {
+            log.info("healthy replicas: {}", keysOf(healthy));
+        }
+        healthyReplicas = healthy;
+    }
+
+    private static List<String> keysOf(List<HealthyReplica> replicas) {
+        return replicas.stream().map(replica -> replica.key).collect(Collectors.toList());
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        closeQuietly(primary);
+        replicas.values().forEach(ReplicaRoutingDataSource::closeQuietly);
+    }
+
+    private static void closeQuietly(DataSource dataSource) {
+        if (dataSource instanceof Closeable) {
+            try {
+                ((Closeable) dataSource).close();
+            } catch (Exception e) {
+                log.warn("failed to close {}", dataSource, e);
+            }
+        }
+    }
+
+    //지연 확인을 통과한 복제본과 그 복제본에 보인 마지막 heartbeat
+    private static final class HealthyReplica {
+        private final String key;
+        private final long beat;
+
+        private HealthyReplica(String key, long beat) {
+            this.key = key;
+            this.beat = beat;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+import static org.springframework.util.StringUtils.hasText;
+
+@Data
+public class MemberSearchCondition {
+    //회원명, 팀명, 나이(ageGoe, ageLoe)
+    private String username;
+    private String usernameContains; // 회원명 부분 검색 (UsernameIndex)
+    private String usernameStartsWith; // 회원명 접두어 검색 (UsernameIndex)
+    private String teamName;
+    private Integer ageGoe;
+    private Integer ageLoe;
+
+    //검색 조건은 빈 문자열을 조건 없음으로 보므로 캐시 키로 쓸때는 null로 맞춘 사본을 사용
+    public MemberSearchCondition normalized() {
+        MemberSearchCondition normalized = new MemberSearchCondition();
+        normalized.setUsername(hasText(username) ? username : null);
+        normalized.setUsernameContains(hasText(usernameContains) ? usernameContains : null);
+        normalized.setUsernameStartsWith(hasText(usernameStartsWith) ? usernameStartsWith : null);
+        normalized.setTeamName(hasText(teamName) ? teamName : null);
+        normalized.setAgeGoe(ageGoe);
+        normalized.setAgeLoe(ageLoe);
+        return normalized;
+    }
+}
@@ -0,0 +1,76 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MemberTeamDto 목록의 컬럼 방식 표현
+ * 필드 이름을 행마다 반복하지 않고 필드별 배열 하나로 내려주고, 팀 이름은 teamNames의 인덱스(team)로 사전 인코딩한다.
+ * 페이지 조회면 page, size, hasNext, totalElements, totalPages만 함께 내려준다. (Slice면 전체 건수 없음)
+ */
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MemberTeamColumnsDto {
+
+    public static final int NO_TEAM = -1;
+
+    private final long[] memberId;
+    private final String[] username;
+    private final int[] age;
+    private final Long[] teamId;
+    private final int[] team; // teamNames 인덱스, 팀이 없으면 -1
+    private final List<String> teamNames = new ArrayList<>();
+
+    private Integer page;
+    private Integer size;
+    private Boolean hasNext;
+    private Long totalElements;
+    private Integer totalPages;
+
+    private MemberTeamColumnsDto(List<MemberTeamDto> rows) {
+        int n = rows.size();
+        memberId = new long[n];
+        username = new String[n];
+        age = new int[n];
+        teamId = new Long[n];
+        team = new int[n];
+
+        Map<String, Integer> dictionary = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            MemberTeamDto row = rows.get(i);
+            memberId[i] = row.getMemberId();
+            username[i] = row.getUsername();
+            age[i] = row.getAge();
+            teamId[i] = row.getTeamId();
+            team[i] = row.getTeamName() == null ? NO_TEAM : dictionary.computeIfAbsent(row.getTeamName(), name -> {
+                teamNames.add(name);
+                return teamNames.size() - 1;
+            });
+        }
+    }
+
+    public static MemberTeamColumnsDto of(List<MemberTeamDto> rows) {
+        return new MemberTeamColumnsDto(rows);
+    }
+
+    //Page면 전체 건수, 페이지 수도 함께
+    public static MemberTeamColumnsDto of(Slice<MemberTeamDto> slice) {
+        MemberTeamColumnsDto columns = new MemberTeamColumnsDto(slice.getContent());
+        columns.page = slice.getNumber();
+        columns.size = slice.getSize();
+        columns.hasNext = slice.hasNext();
+        if (slice instanceof Page) {
+            Page<MemberTeamDto> page = (Page<MemberTeamDto>) slice;
+            columns.totalElements = page.getTotalElements();
+            columns.totalPages = page.getTotalPages();
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,22 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+@Data
+public class TeamStatisticsDto {
+    private Long teamId;
+    private String teamName;
+    private long memberCount;
+    private Double averageAge; // 회원이 없으면 null
+    private Integer minAge;
+    private Integer maxAge;
+
+    public TeamStatisticsDto(Long teamId, String teamName, long memberCount, Double averageAge, Integer minAge, Integer maxAge) {
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.memberCount = memberCount;
+        this.averageAge = averageAge;
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+    }
+}
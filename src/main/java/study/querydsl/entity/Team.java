@@ -1,25 +1,40 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(indexes = @Index(name = "idx_team_name", columnList = "name"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE) // 거의 변경되지 않으므로 락 없이 변경시 무효화만 함
+@BatchSize(size = 500) // Member.team 프록시 초기화, 팀은 행이 작고 수가 적으므로 전역값(100)보다 크게 모아서 조회
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id","name"})
 public class Team {
 
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq_generator")
+    @SequenceGenerator(name = "team_seq_generator", sequenceName = "team_seq", allocationSize = 50) // pooled 최적화, 50건마다 시퀀스 한번 조회
     private Long id;
     private String name;
 
     @OneToMany(mappedBy = "team")
+    @BatchSize(size = 50) // 팀마다 회원이 많으므로 전역값(100)보다 작게 나눠서 한번에 가져오는 행 수를 줄임
     List<Member> members = new ArrayList<>();
 
     public Team(String name) {
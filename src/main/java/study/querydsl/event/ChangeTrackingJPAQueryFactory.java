@@ -0,0 +1,84 @@
+package study.querydsl.event;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Path;
+import com.querydsl.jpa.impl.JPADeleteClause;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.persistence.EntityManager;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 벌크 update/delete 실행 후 EntityChangedEvent(BULK)를 발행하는 JPAQueryFactory
+ * 벌크 연산은 영속성 컨텍스트를 거치지 않아서 하이버네이트 엔티티 이벤트가 발생하지 않는다.
+ * update는 set 절의 프로퍼티를 이벤트에 담아서 그 프로퍼티를 쓰지 않는 캐시는 무시할 수 있게 한다.
+ */
+public class ChangeTrackingJPAQueryFactory extends JPAQueryFactory {
+
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher publisher;
+
+    public ChangeTrackingJPAQueryFactory(EntityManager entityManager, ApplicationEventPublisher publisher) {
+        super(entityManager);
+        this.entityManager = entityManager;
+        this.publisher = publisher;
+    }
+
+    @Override
+    public JPAUpdateClause update(EntityPath<?> path) {
+        return new JPAUpdateClause(entityManager, path) {
+            private final Set<String> properties = new HashSet<>(); // set 절로 바꾸는 프로퍼티
+
+            @Override
+            public <T> JPAUpdateClause set(Path<T> property, T value) {
+                properties.add(property.getMetadata().getName());
+                return super.set(property, value);
+            }
+
+            @Override
+            public <T> JPAUpdateClause set(Path<T> property, Expression<? extends T> expression) {
+                properties.add(property.getMetadata().getName());
+                return super.set(property, expression);
+            }
+
+            @Override
+            public <T> JPAUpdateClause setNull(Path<T> property) {
+                properties.add(property.getMetadata().getName());
+                return super.setNull(property);
+            }
+
+            @Override
+            public JPAUpdateClause set(List<? extends Path<?>> paths, List<?> values) {
+                paths.forEach(property -> properties.add(property.getMetadata().getName()));
+                return super.set(paths, values);
+            }
+
+            @Override
+            public long execute() {
+                return published(EntityChangedEvent.bulkUpdate(path.getType(), properties), super.execute());
+            }
+        };
+    }
+
+    @Override
+    public JPADeleteClause delete(EntityPath<?> path) {
+        return new JPADeleteClause(entityManager, path) {
+            @Override
+            public long execute() {
+                return published(EntityChangedEvent.bulk(path.getType()), super.execute());
+            }
+        };
+    }
+
+    private long published(EntityChangedEvent event, long affected) {
+        if (affected > 0) {
+            publisher.publishEvent(event);
+        }
+        return affected;
+    }
+}
@@ -0,0 +1,41 @@
+package study.querydsl.event;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 회원/팀 데이터 버전. 변경될 때마다 증가하므로 응답 캐시 키와 ETag로 사용한다.
+ * flush 시점과 커밋 후에 모두 올려서 커밋 전에 읽은 이전 데이터가 새 버전으로 남지 않게 한다.
+ * 커밋 후에 갱신되는 사전, 인덱스, 스냅샷은 @Order(Ordered.HIGHEST_PRECEDENCE)로 이 리스너보다 먼저 반영해서
+ * 응답 캐시가 새 버전으로 이전 데이터를 캐시하지 않게 한다.
+ */
+@Component
+public class DataVersion {
+
+    private final AtomicLong version = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    @EventListener
+    public void onChanged(EntityChangedEvent event) {
+        increment(event);
+    }
+
+    @TransactionalEventListener
+    public void onCommitted(EntityChangedEvent event) {
+        increment(event);
+    }
+
+    private void increment(EntityChangedEvent event) {
+        if (event.isAbout(Member.class) || event.isAbout(Team.class)) {
+            version.incrementAndGet();
+        }
+    }
+}
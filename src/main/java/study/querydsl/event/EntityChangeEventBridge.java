@@ -0,0 +1,71 @@
+package study.querydsl.event;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import study.querydsl.event.EntityChangedEvent.ChangeType;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 하이버네이트 엔티티 이벤트를 스프링 이벤트(EntityChangedEvent)로 전달한다.
+ * 벌크 연산은 하이버네이트 이벤트가 발생하지 않으므로 ChangeTrackingJPAQueryFactory에서 따로 발행한다.
+ */
+@Component
+@RequiredArgsConstructor
+public class EntityChangeEventBridge implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final ApplicationEventPublisher publisher;
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        publish(ChangeType.PERSIST, event.getPersister(), event.getEntity(), event.getState(), null);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        publish(ChangeType.UPDATE, event.getPersister(), event.getEntity(), event.getState(), event.getOldState());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        publish(ChangeType.REMOVE, event.getPersister(), event.getEntity(), null, event.getDeletedState());
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private void publish(ChangeType type, EntityPersister persister, Object entity, Object[] state, Object[] oldState) {
+        publisher.publishEvent(new EntityChangedEvent(type, persister.getMappedClass(), entity,
+                persister.getPropertyNames(), copy(state), copy(oldState)));
+    }
+
+    //하이버네이트가 재사용하는 배열일 수 있으므로 복사 (트랜잭션 커밋 후 처리하는 리스너가 있음)
+    private static Object[] copy(Object[] state) {
+        return state != null ? state.clone() : null;
+    }
+}
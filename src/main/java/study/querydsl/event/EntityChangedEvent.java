@@ -0,0 +1,94 @@
+package study.querydsl.event;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * 엔티티 변경 이벤트. 영속성 컨텍스트 flush(insert/update/delete)와 벌크 연산 실행 시 발행된다.
+ * 하이버네이트 이벤트로 발행된 경우 변경 전후 프로퍼티 값(state, oldState)을 함께 담는다.
+ */
+@Getter
+@ToString(of = {"type", "entityType"})
+public class EntityChangedEvent {
+
+    public enum ChangeType {
+        PERSIST, UPDATE, REMOVE,
+        BULK // 벌크 update/delete 등 어떤 행이 바뀌었는지 알 수 없는 변경
+    }
+
+    private final ChangeType type;
+    private final Class<?> entityType;
+    private final Object entity; // BULK일때는 null
+    private final String[] propertyNames;
+    private final Object[] state; // 변경 후 값, REMOVE/BULK일때는 null
+    private final Object[] oldState; // 변경 전 값, PERSIST/BULK일때는 null
+    private final Set<String> bulkProperties; // 벌크 update의 set 절 프로퍼티, 그 외에는 null
+
+    public EntityChangedEvent(ChangeType type, Class<?> entityType, Object entity) {
+        this(type, entityType, entity, null, null, null);
+    }
+
+    public EntityChangedEvent(ChangeType type, Class<?> entityType, Object entity,
+                              String[] propertyNames, Object[] state, Object[] oldState) {
+        this(type, entityType, entity, propertyNames, state, oldState, null);
+    }
+
+    private EntityChangedEvent(ChangeType type, Class<?> entityType, Object entity,
+                               String[] propertyNames, Object[] state, Object[] oldState, Set<String> bulkProperties) {
+        this.type = type;
+        this.entityType = entityType;
+        this.entity = entity;
+        this.propertyNames = propertyNames;
+        this.state = state;
+        this.oldState = oldState;
+        this.bulkProperties = bulkProperties;
+    }
+
+    //어떤 프로퍼티가 바뀌었는지 알 수 없는 벌크 변경 (벌크 delete, 직접 적재 등)
+    public static EntityChangedEvent bulk(Class<?> entityType) {
+        return new EntityChangedEvent(ChangeType.BULK, entityType, null);
+    }
+
+    //set 절의 프로퍼티만 바꾼 벌크 update
+    public static EntityChangedEvent bulkUpdate(Class<?> entityType, Set<String> properties) {
+        return new EntityChangedEvent(ChangeType.BULK, entityType, null, null, null, null, Collections.unmodifiableSet(properties));
+    }
+
+    public boolean isAbout(Class<?> type) {
+        return type.isAssignableFrom(entityType);
+    }
+
+    public boolean isBulk() {
+        return type == ChangeType.BULK;
+    }
+
+    //property가 바뀌었을 수 있는지, 벌크 update만 set 절로 판단하고 나머지는 항상 true
+    public boolean mayChange(String property) {
+        return bulkProperties == null || bulkProperties.contains(property);
+    }
+
+    //변경 후 프로퍼티 값
+    public Object get(String property) {
+        return valueOf(state, property);
+    }
+
+    //변경 전 프로퍼티 값
+    public Object getOld(String property) {
+        return valueOf(oldState, property);
+    }
+
+    private Object valueOf(Object[] values, String property) {
+        if (values == null || propertyNames == null) {
+            return null;
+        }
+        for (int i = 0; i < propertyNames.length; i++) {
+            if (propertyNames[i].equals(property)) {
+                return values[i];
+            }
+        }
+        throw new IllegalArgumentException("Unknown property " + property + " of " + entityType.getName());
+    }
+}
@@ -0,0 +1,25 @@
+package study.querydsl.event;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 벌크 변경시 해당 엔티티의 2차 캐시 리전을 비운다.
+ * JPQL 벌크 연산은 하이버네이트가 리전을 비워주지만 JDBC로 직접 변경한 경우(MemberSeeder 등)는 알 수 없다.
+ */
+@Component
+@RequiredArgsConstructor
+public class SecondLevelCacheEvictor {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    @EventListener
+    public void evict(EntityChangedEvent event) {
+        if (event.isBulk()) {
+            entityManagerFactory.getCache().evict(event.getEntityType());
+        }
+    }
+}
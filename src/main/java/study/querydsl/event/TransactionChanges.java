@@ -0,0 +1,34 @@
+package study.querydsl.event;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 현재 트랜잭션이 커밋되지 않은 변경을 flush 했는지 key(보통 커밋 후에 갱신되는 사전, 인덱스, 스냅샷 자신)별로 표시한다.
+ * flush 시점의 @EventListener에서 markChanged로 표시하고, 읽을때 isChanged면 자기 변경이 아직 반영되지 않았으므로 DB를 읽는다.
+ * 표시는 트랜잭션이 끝나면(커밋, 롤백) 해제된다.
+ */
+public final class TransactionChanges {
+
+    private TransactionChanges() {
+    }
+
+    //트랜잭션 동기화가 없으면(트랜잭션 밖) 표시하지 않음
+    public static void markChanged(Object key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(key)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(key, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(key);
+            }
+        });
+    }
+
+    public static boolean isChanged(Object key) {
+        return TransactionSynchronizationManager.hasResource(key);
+    }
+}
@@ -0,0 +1,17 @@
+package study.querydsl.monitoring;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MonitoringConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer statementInspectorCustomizer(
+            @Value("${monitoring.sql.n-plus-one-threshold:5}") int nPlusOneThreshold) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlStatementCounter(nPlusOneThreshold));
+    }
+}
@@ -0,0 +1,95 @@
+package study.querydsl.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static study.querydsl.repository.MemberSearchQueryCache.shapeName;
+import static study.querydsl.repository.MemberSearchQueryCache.shapeOf;
+
+/**
+ * 회원 검색 메트릭
+ * member.search (timer): method, phase(content|count), shape 별 지연시간 히스토그램
+ * member.search.rows (summary): method, shape 별 조회 건수
+ * member.search.count (counter): method, outcome(executed|cached|skipped) 별 카운트 쿼리 실행/캐시 적중/생략 횟수
+ * 캐시에서 꺼낸 카운트는 count 지연시간에 섞이지 않도록 타이머에 기록하지 않는다.
+ * 백분위는 여러 인스턴스를 합칠 수 있도록 히스토그램으로만 내보낸다. (histogram_quantile)
+ * 미터는 태그 조합별로 한번만 등록하고 요청마다 재사용한다.
+ */
+@Component
+@RequiredArgsConstructor
+public class SearchMetrics {
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> rowSummaries = new ConcurrentHashMap<>();
+    private final Map<String, Counter> countOutcomes = new ConcurrentHashMap<>();
+
+    public <T> List<T> content(String method, MemberSearchCondition condition, Supplier<List<T>> contentQuery) {
+        String shape = shapeName(shapeOf(condition));
+        List<T> rows = timer(method, "content", shape).record(contentQuery);
+        recordRows(method, shape, rows.size());
+        return rows;
+    }
+
+    public long count(String method, MemberSearchCondition condition, LongSupplier countQuery) {
+        return timer(method, "count", shapeName(shapeOf(condition))).record(countQuery::getAsLong);
+    }
+
+    //PageableExecutionUtils가 카운트 쿼리를 생략했는지도 기록
+    public <T> Page<T> page(String method, MemberSearchCondition condition, List<T> content, Pageable pageable,
+                            LongSupplier countQuery) {
+        return page(method, condition, content, pageable, () -> null, countQuery);
+    }
+
+    //카운트가 필요하면 cachedCount를 먼저 보고, 없을때(null)만 countQuery를 실행
+    public <T> Page<T> page(String method, MemberSearchCondition condition, List<T> content, Pageable pageable,
+                            Supplier<Long> cachedCount, LongSupplier countQuery) {
+        String[] outcome = {"skipped"};
+        Page<T> page = PageableExecutionUtils.getPage(content, pageable, () -> {
+            Long cached = cachedCount.get();
+            if (cached != null) {
+                outcome[0] = "cached";
+                return cached;
+            }
+            outcome[0] = "executed";
+            return count(method, condition, countQuery);
+        });
+        String result = outcome[0];
+        countOutcomes.computeIfAbsent(method + ":" + result, key -> Counter.builder("member.search.count")
+                .tag("method", method)
+                .tag("outcome", result)
+                .register(registry)).increment();
+        return page;
+    }
+
+    private void recordRows(String method, String shape, int rows) {
+        rowSummaries.computeIfAbsent(method + ":" + shape, key -> DistributionSummary.builder("member.search.rows")
+                .tag("method", method)
+                .tag("shape", shape)
+                .publishPercentileHistogram()
+                .register(registry)).record(rows);
+    }
+
+    private Timer timer(String method, String phase, String shape) {
+        return timers.computeIfAbsent(method + ":" + phase + ":" + shape, key -> Timer.builder("member.search")
+                .tag("method", method)
+                .tag("phase", phase)
+                .tag("shape", shape)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+}
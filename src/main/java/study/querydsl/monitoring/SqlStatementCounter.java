@@ -0,0 +1,97 @@
+package study.querydsl.monitoring;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 하이버네이트가 실행하는 SQL을 가로채서 현재 스레드에 열린 StatementScope들에 기록한다.
+ * 트랜잭션 동기화가 활성화되어 있으면 트랜잭션 단위 스코프도 자동으로 열고 완료시 N+1 여부를 로그로 남긴다.
+ * (같은 모양의 select가 monitoring.sql.n-plus-one-threshold 번 이상이면 경고)
+ */
+@Slf4j
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<Deque<StatementScope>> SCOPES = ThreadLocal.withInitial(ArrayDeque::new);
+    private static final Object TRANSACTION_SCOPE_KEY = new Object();
+
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final int nPlusOneThreshold;
+
+    public SqlStatementCounter(int nPlusOneThreshold) {
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        record(sql);
+        return sql;
+    }
+
+    public static StatementScope open(String name) {
+        StatementScope scope = new StatementScope(name);
+        SCOPES.get().addLast(scope);
+        return scope;
+    }
+
+    static void detach(StatementScope scope) {
+        Deque<StatementScope> scopes = SCOPES.get();
+        scopes.remove(scope);
+        if (scopes.isEmpty()) {
+            SCOPES.remove();
+        }
+    }
+
+    public static void warnIfNPlusOne(StatementScope scope, int threshold) {
+        Map<String, Integer> repeated = scope.repeatedSelects(threshold);
+        if (!repeated.isEmpty()) {
+            log.warn("N+1 suspected in {}: {}", scope, repeated);
+        }
+    }
+
+    //IN 절 파라미터 수만 다른 쿼리는 같은 모양으로 봄
+    static String shapeOf(String sql) {
+        String shape = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        return IN_LIST.matcher(shape).replaceAll("(?...)");
+    }
+
+    private void record(String sql) {
+        openTransactionScopeIfNeeded();
+        Deque<StatementScope> scopes = SCOPES.get();
+        if (scopes.isEmpty()) {
+            SCOPES.remove();
+            return;
+        }
+        String shape = shapeOf(sql);
+        for (StatementScope scope : scopes) {
+            scope.record(shape);
+        }
+    }
+
+    private void openTransactionScopeIfNeeded() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(TRANSACTION_SCOPE_KEY)) {
+            return;
+        }
+        String name = TransactionSynchronizationManager.getCurrentTransactionName();
+        StatementScope scope = open("tx " + (name != null ? name : "unnamed"));
+        TransactionSynchronizationManager.bindResource(TRANSACTION_SCOPE_KEY, scope);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(TRANSACTION_SCOPE_KEY);
+                scope.close();
+                log.debug("{}", scope);
+                warnIfNPlusOne(scope, nPlusOneThreshold);
+            }
+        });
+    }
+}
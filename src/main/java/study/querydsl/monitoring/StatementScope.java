@@ -0,0 +1,68 @@
+package study.querydsl.monitoring;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 요청, 트랜잭션 등 한 구간에서 실행된 SQL 수를 모양별로 센다.
+ * 스레드에 묶여서 사용되므로 동기화하지 않는다.
+ */
+public class StatementScope implements AutoCloseable {
+
+    private final String name;
+    private final Map<String, Integer> counts = new LinkedHashMap<>();
+    private int total;
+    private boolean closed;
+
+    StatementScope(String name) {
+        this.name = name;
+    }
+
+    void record(String shape) {
+        counts.merge(shape, 1, Integer::sum);
+        total++;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    //실행된 SQL 모양(실행 순서)
+    public Set<String> getStatements() {
+        return Collections.unmodifiableSet(counts.keySet());
+    }
+
+    /**
+     * 같은 모양의 select가 threshold번 이상 실행됐으면 N+1 로 본다.
+     * @return 모양별 실행 횟수
+     */
+    public Map<String, Integer> repeatedSelects(int threshold) {
+        Map<String, Integer> repeated = new LinkedHashMap<>();
+        counts.forEach((shape, count) -> {
+            if (count >= threshold && shape.regionMatches(true, 0, "select", 0, 6)) {
+                repeated.put(shape, count);
+            }
+        });
+        return repeated;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            SqlStatementCounter.detach(this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + total + " statements)";
+    }
+}
@@ -0,0 +1,153 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 회원 벌크 update/delete를 조건에 맞는 회원 id chunkSize개씩 나눠서 실행한다.
+ * QuerydslBasicTest.bulkUpdate 처럼 한 문장으로 실행하면 조건에 맞는 모든 행을 한번에 잠그므로
+ * 범위마다 트랜잭션을 따로 커밋하고 범위 사이에 pause만큼 쉬어서 다른 요청이 끼어들 수 있게 한다.
+ * 범위마다 영속성 컨텍스트를 비우고, 범위마다 벌크 변경 이벤트를 발행해서 커밋될때 캐시들이 그 범위의 변경을 반영한다.
+ * 트랜잭션 안에서 호출하면 모든 범위가 그 트랜잭션에 참여하므로 나눠 커밋되지 않는다.
+ */
+@Slf4j
+@Repository
+public class MemberBulkRepository {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final UsernamePredicates usernamePredicates;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Duration pause;
+
+    public MemberBulkRepository(EntityManager em, JPAQueryFactory queryFactory, UsernamePredicates usernamePredicates,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${member.bulk.chunk-size:10000}") int chunkSize,
+                                @Value("${member.bulk.pause:0ms}") Duration pause) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunk-size must be greater than zero: " + chunkSize);
+        }
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.usernamePredicates = usernamePredicates;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.pause = pause;
+    }
+
+    //QuerydslBasicTest.bulkAdd
+    public long addAge(MemberSearchCondition condition, int delta) {
+        return update(condition, update -> update.set(member.age, member.age.add(delta)));
+    }
+
+    /**
+     * @param assignments set 절을 지정, where는 이번 범위의 id 구간과 검색 조건으로 채워짐
+     * @return 변경된 회원 수
+     */
+    public long update(MemberSearchCondition condition, UnaryOperator<JPAUpdateClause> assignments) {
+        return inChunks("update", condition, where -> assignments.apply(queryFactory.update(member))
+                .where(where)
+                .execute());
+    }
+
+    //QuerydslBasicTest.bulkDelte
+    public long delete(MemberSearchCondition condition) {
+        return inChunks("delete", condition, where -> queryFactory.delete(member)
+                .where(where)
+                .execute());
+    }
+
+    private long inChunks(String operation, MemberSearchCondition condition, Function<Predicate, Long> chunk) {
+        long affected = 0;
+        Long lastId = null;
+        while (true) {
+            Long after = lastId;
+            Chunk result = transactionTemplate.execute(status -> {
+                //조건에 맞는 다음 회원 id chunkSize개를 찾아서 그 범위만 변경하므로 빈 범위를 지나가지 않음
+                Predicate[] predicates = predicates(condition);
+                List<Long> ids = queryFactory
+                        .select(member.id)
+                        .from(member)
+                        .where(after != null ? member.id.gt(after) : null)
+                        .where(predicates)
+                        .orderBy(member.id.asc())
+                        .limit(chunkSize)
+                        .fetch();
+                if (ids.isEmpty()) {
+                    return null;
+                }
+                Long firstId = ids.get(0);
+                Long toId = ids.get(ids.size() - 1);
+                Predicate where = ExpressionUtils.allOf(member.id.between(firstId, toId), ExpressionUtils.allOf(predicates));
+                long count = chunk.apply(where);
+                em.clear(); // 벌크 연산 결과와 다른 엔티티가 남지 않도록
+                return new Chunk(firstId, toId, ids.size(), count);
+            });
+            if (result == null) {
+                break;
+            }
+            affected += result.count;
+            lastId = result.toId;
+            log.debug("bulk {} {}: ids [{}, {}] {} rows", operation, condition, result.fromId, result.toId, result.count);
+            if (result.size < chunkSize) {
+                break;
+            }
+            throttle();
+        }
+        return affected;
+    }
+
+    @RequiredArgsConstructor
+    private static class Chunk {
+        private final Long fromId;
+        private final Long toId;
+        private final int size;
+        private final long count;
+    }
+
+    private void throttle() {
+        if (pause.isZero() || pause.isNegative()) {
+            return;
+        }
+        try {
+            Thread.sleep(pause.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Bulk operation interrupted", e);
+        }
+    }
+
+    //벌크 연산은 조인을 쓸 수 없으므로 팀 이름은 서브쿼리로
+    private Predicate[] predicates(MemberSearchCondition condition) {
+        return new Predicate[]{
+                hasText(condition.getUsername()) ? member.username.eq(condition.getUsername()) : null,
+                hasText(condition.getTeamName())
+                        ? member.team.in(JPAExpressions.selectFrom(team).where(team.name.eq(condition.getTeamName())))
+                        : null,
+                condition.getAgeGoe() != null ? member.age.goe(condition.getAgeGoe()) : null,
+                condition.getAgeLoe() != null ? member.age.loe(condition.getAgeLoe()) : null,
+                usernamePredicates.of(condition)
+        };
+    }
+}
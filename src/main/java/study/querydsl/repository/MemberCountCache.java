@@ -0,0 +1,90 @@
+package study.querydsl.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.DataVersion;
+import study.querydsl.event.EntityChangedEvent;
+import study.querydsl.event.TransactionChanges;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * 검색 조건별 전체 카운트 캐시
+ * Member, Team이 변경되면(벌크 연산 포함) 어떤 조건의 카운트가 바뀌었는지 알 수 없으므로 전부 비운다.
+ * 비워도 이미 세고 있던 조회는 이전 데이터로 센 카운트를 저장할 수 있으므로 세기 전의 데이터 버전(DataVersion)을
+ * 같이 저장하고, 읽을때 버전이 다르면 버리고 다시 센다. 버전은 flush 시점과 커밋 후에 모두 오르므로
+ * flush와 커밋 사이에 다른 트랜잭션이 센 이전 카운트도 커밋 후에는 쓰이지 않는다.
+ * 회원/팀 변경을 flush한 트랜잭션은 커밋되지 않은 자기 변경이 반영된 카운트가 다른 트랜잭션에 보이지 않도록 캐시를 쓰지 않는다.
+ */
+@Component
+public class MemberCountCache {
+
+    private final EntityManager em;
+    private final DataVersion dataVersion;
+    private final Cache<MemberSearchCondition, Entry> cache;
+
+    public MemberCountCache(EntityManager em, DataVersion dataVersion,
+                            @Value("${member.count-cache.maximum-size:10000}") long maximumSize,
+                            @Value("${member.count-cache.ttl:30s}") Duration ttl) {
+        this.em = em;
+        this.dataVersion = dataVersion;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public long get(MemberSearchCondition condition, LongSupplier countQuery) {
+        if (isChangedInCurrentTransaction()) {
+            return countQuery.getAsLong();
+        }
+        MemberSearchCondition key = condition.normalized();
+        long version = dataVersion.current();
+        Entry entry = cache.get(key, k -> new Entry(version, countQuery.getAsLong()));
+        if (entry.version != version) {
+            entry = new Entry(version, countQuery.getAsLong());
+            cache.put(key, entry);
+        }
+        return entry.count;
+    }
+
+    //캐시에 없으면 null
+    public Long getIfPresent(MemberSearchCondition condition) {
+        if (isChangedInCurrentTransaction()) {
+            return null;
+        }
+        Entry entry = cache.getIfPresent(condition.normalized());
+        return entry != null && entry.version == dataVersion.current() ? entry.count : null;
+    }
+
+    @EventListener
+    public void invalidate(EntityChangedEvent event) {
+        if (event.isAbout(Member.class) || event.isAbout(Team.class)) {
+            TransactionChanges.markChanged(this);
+            cache.invalidateAll();
+        }
+    }
+
+    //아직 flush 되지 않은 변경도 표시되도록 먼저 flush
+    private boolean isChangedInCurrentTransaction() {
+        if (em.isJoinedToTransaction()) {
+            em.flush();
+        }
+        return TransactionChanges.isChanged(this);
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final long version; // 세기 시작할때의 데이터 버전
+        private final long count;
+    }
+}
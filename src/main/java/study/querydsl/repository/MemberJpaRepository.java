@@ -4,15 +4,22 @@ import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.monitoring.SearchMetrics;
 
 import javax.persistence.EntityManager;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
@@ -22,8 +29,16 @@ import static study.querydsl.entity.QTeam.team;
 @RequiredArgsConstructor
 public class MemberJpaRepository {
 
+    private static final int STREAM_FETCH_SIZE = 1000; // 커서로 읽을때 JDBC에서 한번에 가져오는 행 수
+
     private final EntityManager em; // 동시성 문제와 상관없이 트렌젝션 단위로 동작하므로 동시성 문제가 없다. (프록시 사용)
     private final JPAQueryFactory queryFactory;
+    private final MemberSearchQueryCache searchQueryCache;
+    private final SearchMetrics searchMetrics;
+    private final UsernamePredicates usernamePredicates;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}")
+    private int saveBatchSize; // insert를 모아 보내는 단위와 맞춰서 flush
 
     /* bean으로 등록하지 않을경우는 아래처럼 사용
     public MemberJpaRepository(EntityManager em) {
@@ -36,53 +51,102 @@ public class MemberJpaRepository {
         em.persist(member);
     }
 
+    //batch_size건씩 insert를 모아 보내고 영속성 컨텍스트를 비워서 건수와 상관없이 메모리를 일정하게 유지
+    //flush, clear 하므로 호출 전에 영속 상태였던 엔티티도 준영속이 됨
+    @Transactional
+    public void saveAll(Collection<Member> members) {
+        int count = 0;
+        for (Member member : members) {
+            em.persist(member);
+            if (++count % Math.max(saveBatchSize, 1) == 0) { // 0이면 배치를 끈 설정
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
     public Optional<Member> findById(Long id) {
         Member member = em.find(Member.class, id);
         return Optional.ofNullable(member);
     }
 
+    /**
+     * 엔티티를 조회만 하는 메서드는 읽기 전용으로 조회한다.
+     * 읽기 전용 트랜잭션(새로 시작될 때 flush 모드 MANUAL)으로 flush 시점의 변경 감지를 생략하고
+     * 쿼리 힌트로 엔티티별 스냅샷을 만들지 않아 영속성 컨텍스트 메모리를 줄인다.
+     * 조회한 엔티티를 변경해도 DB에 반영되지 않는다.
+     */
+    @Transactional(readOnly = true)
     public List<Member> findAll() {
         return em.createQuery("select m from Member m", Member.class)
+                .setHint(QueryHints.HINT_READONLY, true)
                 .getResultList();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAll_Querydsl() {
         return queryFactory
                 .selectFrom(member)
+                .setHint(QueryHints.HINT_READONLY, true)
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findByUsername(String username) {
         return em.createQuery("select m from Member m where m.username = :username", Member.class)
                 .setParameter("username", username)
+                .setHint(QueryHints.HINT_READONLY, true)
                 .getResultList();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findByUsername_Querydsl(String username) {
         return queryFactory
                 .selectFrom(member)
                 .where(member.username.eq(username))
+                .setHint(QueryHints.HINT_READONLY, true)
                 .fetch();
     }
 
-    //빌더방식 동적쿼리
+    //빌더방식 동적쿼리, 요청마다 BooleanBuilder로 JPQL을 만듦
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition) {
+        return searchMetrics.content("jpa.searchByBuilder", condition, () -> {
+            BooleanBuilder builder = new BooleanBuilder();
+            if (hasText(condition.getUsername())) {
+                builder.and(member.username.eq(condition.getUsername()));
+            }
+            if (hasText(condition.getTeamName())) {
+                builder.and(team.name.eq(condition.getTeamName()));
+            }
+            if (condition.getAgeGoe() != null) {
+                builder.and(member.age.goe(condition.getAgeGoe()));
+            }
+            if (condition.getAgeLoe() != null) {
+                builder.and(member.age.loe(condition.getAgeLoe()));
+            }
+            builder.and(usernamePredicates.of(condition));
+
+            return queryFactory
+                    .select(new QMemberTeamDto(
+                            member.id.as("memberId"),
+                            member.username,
+                            member.age,
+                            team.id.as("teamId"),
+                            team.name.as("teamName")))
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(builder)
+                    .fetch();
+        });
+    }
 
-        BooleanBuilder builder = new BooleanBuilder();
-        if (hasText(condition.getUsername())) {
-            builder.and(member.username.eq(condition.getUsername()));
-        }
-        if (hasText(condition.getTeamName())) {
-            builder.and(team.name.eq(condition.getTeamName()));
-        }
-        if (condition.getAgeGoe() != null) {
-            builder.and(member.age.goe(condition.getAgeGoe()));
-        }
-        if (condition.getAgeLoe() != null) {
-            builder.and(member.age.loe(condition.getAgeLoe()));
-        }
-
-        return queryFactory
+    //where 파라미터 방식 동적쿼리, 요청마다 JPQL을 만듦 (null 조건은 무시됨)
+    @Transactional(readOnly = true)
+    public List<MemberTeamDto> searchByWhereParams(MemberSearchCondition condition) {
+        return searchMetrics.content("jpa.searchByWhereParams", condition, () -> queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -91,13 +155,26 @@ public class MemberJpaRepository {
                         team.name.as("teamName")))
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(builder)
-                .fetch();
+                .where(
+                        usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()),
+                        usernamePredicates.of(condition)
+                )
+                .fetch());
     }
 
-    //where 방식 동적쿼리
+    //조건 모양별로 미리 만들어둔 쿼리 사용 (MemberSearchQueryCache)
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-        return queryFactory
+        return searchMetrics.content("jpa.search", condition, () -> searchQueryCache.search(condition));
+    }
+
+    //결과를 List로 모으지 않고 forward-only 커서로 한 건씩 action에 넘김, 커서가 열려있는 동안 트랜잭션 유지
+    @Transactional(readOnly = true)
+    public void searchStream(MemberSearchCondition condition, Consumer<MemberTeamDto> action) {
+        try (Stream<MemberTeamDto> stream = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -110,10 +187,13 @@ public class MemberJpaRepository {
                         usernameEq(condition.getUsername()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                        //ageBetween(condition.getAgeLoe(), condition.getAgeGoe())
+                        ageLoe(condition.getAgeLoe()),
+                        usernamePredicates.of(condition)
                 )
-                .fetch();
+                .setHint(QueryHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .stream()) {
+            stream.forEach(action);
+        }
     }
 
     //조건을 조합으로 사용가능
@@ -136,4 +216,5 @@ public class MemberJpaRepository {
     private BooleanExpression ageLoe(Integer ageLoe) {
         return ageLoe != null ? member.age.loe(ageLoe) : null;
     }
+
 }
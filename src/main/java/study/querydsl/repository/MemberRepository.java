@@ -1,11 +1,23 @@
 package study.querydsl.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.entity.Member;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 public interface MemberRepository extends JpaRepository<Member, Long>, MemberRepositoryCustom {
+    //조회만 하는 finder는 읽기 전용 트랜잭션 + 읽기 전용 힌트로 스냅샷을 만들지 않음 (MemberJpaRepository 참고)
+    @Override
+    @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+    List<Member> findAll();
+
     //select m from Member m where m.username = :username;
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
     List<Member> findByUsername(String username);
 }
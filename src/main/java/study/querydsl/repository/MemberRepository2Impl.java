@@ -1,40 +1,22 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.types.dsl.BooleanExpression;
 import org.springframework.data.jpa.repository.support.QuerydslRepositorySupport;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
-import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 
 import java.util.List;
 
-import static org.springframework.util.StringUtils.hasText;
-import static study.querydsl.entity.QMember.member;
-import static study.querydsl.entity.QTeam.team;
-
 public class MemberRepository2Impl extends QuerydslRepositorySupport { // 인터페이스명 + impl 로 꼭 만들어야함
-    public MemberRepository2Impl() {
+    private final MemberSearchQueryCache searchQueryCache;
+
+    public MemberRepository2Impl(MemberSearchQueryCache searchQueryCache) {
         super(Member.class);
+        this.searchQueryCache = searchQueryCache;
     }
 
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-        return from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                        //ageBetween(condition.getAgeLoe(), condition.getAgeGoe())
-                )
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .fetch();
+        return searchQueryCache.search(condition);
     }
 
 //    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
@@ -72,25 +54,4 @@ public class MemberRepository2Impl extends QuerydslRepositorySupport { // 인터
 //        //getPage에서 count쿼리가 필요할때만 날림
 //        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchOne);
 //    }
-
-    //조건을 조합으로 사용가능
-    private BooleanExpression ageBetween(int ageLoe, int ageGoe) {
-        return ageGoe(ageLoe).and(ageGoe(ageGoe));
-    }
-
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
-    }
-
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
-    }
-
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? member.age.goe(ageGoe) : null;
-    }
-
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.loe(ageLoe) : null;
-    }
 }
@@ -1,74 +1,66 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.QueryResults;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.JPQLQuery;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.jpa.repository.support.QuerydslRepositorySupport;
-import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.monitoring.SearchMetrics;
+import study.querydsl.repository.support.CountQueryBuilder;
+import study.querydsl.repository.support.CountQueryExecutor;
+import study.querydsl.snapshot.MemberSnapshot;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
+@Transactional(readOnly = true) // 조회만 하므로 복제본으로 보냄 (ReplicaRoutingDataSource)
 public class MemberRepositoryImpl extends QuerydslRepositorySupport implements MemberRepositoryCustom { // 인터페이스명 + impl 로 꼭 만들어야함
 
     private final JPAQueryFactory queryFactory;
-
-    public MemberRepositoryImpl(JPAQueryFactory queryFactory) {
+    private final MemberSearchQueryCache searchQueryCache;
+    private final MemberCountCache countCache;
+    private final SearchMetrics searchMetrics;
+    private final CountQueryExecutor countQueryExecutor;
+    private final UsernamePredicates usernamePredicates;
+    private final ObjectProvider<MemberSnapshot> snapshot; // member.snapshot.enabled=true 일때만 있음
+
+    public MemberRepositoryImpl(JPAQueryFactory queryFactory, MemberSearchQueryCache searchQueryCache,
+                                MemberCountCache countCache, SearchMetrics searchMetrics,
+                                CountQueryExecutor countQueryExecutor, UsernamePredicates usernamePredicates,
+                                ObjectProvider<MemberSnapshot> snapshot) {
         super(Member.class);
         this.queryFactory = queryFactory;
+        this.searchQueryCache = searchQueryCache;
+        this.countCache = countCache;
+        this.searchMetrics = searchMetrics;
+        this.countQueryExecutor = countQueryExecutor;
+        this.usernamePredicates = usernamePredicates;
+        this.snapshot = snapshot;
     }
 
     @Override
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                        //ageBetween(condition.getAgeLoe(), condition.getAgeGoe())
-                )
-                .fetch();
+        return searchMetrics.content("search", condition, () -> searchQueryCache.search(condition));
     }
 
     @Override
     public List<MemberTeamDto> searchSupport(MemberSearchCondition condition) {
-        return from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                        //ageBetween(condition.getAgeLoe(), condition.getAgeGoe())
-                )
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .fetch();
+        return searchMetrics.content("searchSupport", condition, () -> searchQueryCache.search(condition));
     }
 
     @Override
@@ -80,17 +72,26 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
                         member.username,
                         member.age,
                         team.id.as("teamId"),
-                        team.name.as("teamName")));
+                        team.name.as("teamName")))
+                .where(
+                        usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()),
+                        usernamePredicates.of(condition)
+                );
 
-        return getQuerydsl().applyPagination(pageable, query).fetch();
+        return searchMetrics.content("searchPageSimpleSupport", condition,
+                () -> getQuerydsl().applyPagination(pageable, query).fetch());
     }
 
     /**
-     * querydsl에서 .fetchResults();를 사용하지 않도록 권장하므로 complex방법으로 사용할것
+     * fetchResults() 대신 컨텐츠를 조회하고 카운트는 CountQueryBuilder로 컨텐츠 쿼리에서 만든다.
+     * 팀 이름 조건이 없으면 카운트 쿼리에서 team left join이 빠진다.
      */
     @Override
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDto> result = queryFactory
+        JPAQuery<MemberTeamDto> query = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -103,54 +104,91 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
                         usernameEq(condition.getUsername()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
+                        ageLoe(condition.getAgeLoe()),
+                        usernamePredicates.of(condition)
                         //ageBetween(condition.getAgeLoe(), condition.getAgeGoe())
-                )
+                );
+        JPAQuery<Long> countQuery = CountQueryBuilder.countOf(getEntityManager(), query);
+
+        List<MemberTeamDto> content = searchMetrics.content("searchPageSimple", condition, () -> query
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
-                .fetchResults();
-
-        List<MemberTeamDto> content = result.getResults();
-        long total = result.getTotal();
+                .fetch());
 
-        return new PageImpl<>(content, pageable, total);
+        return searchMetrics.page("searchPageSimple", condition, content, pageable, countQuery::fetchOne);
     }
 
     @Override
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDto> content = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                        //ageBetween(condition.getAgeLoe(), condition.getAgeGoe())
-                )
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetch();
+        List<MemberTeamDto> content = searchMetrics.content("searchPageComplex", condition,
+                () -> searchQueryCache.search(condition, pageable.getOffset(), pageable.getPageSize()));
 
-        JPAQuery<Long> countQuery = queryFactory
-                .select(member.count())
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                );
+        //getPage에서 count쿼리가 필요할때만 날림, 같은 조건의 카운트는 캐시에서 재사용
+        return searchMetrics.page("searchPageComplex", condition, content, pageable,
+                () -> countCache.getIfPresent(condition),
+                () -> countCache.get(condition, () -> searchQueryCache.count(condition)));
+    }
 
-        //getPage에서 count쿼리가 필요할때만 날림
-        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchOne);
+    //searchPageComplex와 카운트는 같고 컨텐츠만 id를 먼저 고르는 지연 조인으로 조회
+    @Override
+    public Page<MemberTeamDto> searchPageDeferredJoin(MemberSearchCondition condition, Pageable pageable) {
+        List<MemberTeamDto> content = searchMetrics.content("searchPageDeferredJoin", condition,
+                () -> searchQueryCache.searchDeferredJoin(condition, pageable.getOffset(), pageable.getPageSize()));
+
+        return searchMetrics.page("searchPageDeferredJoin", condition, content, pageable,
+                () -> countCache.getIfPresent(condition),
+                () -> countCache.get(condition, () -> searchQueryCache.count(condition)));
+    }
+
+    /**
+     * searchPageComplex와 결과는 같지만 카운트 쿼리를 별도 스레드에서 컨텐츠 쿼리와 동시에 실행한다.
+     * 카운트는 별도 읽기 전용 트랜잭션에서 실행되므로 호출한 트랜잭션의 커밋되지 않은 변경은 카운트에 반영되지 않는다.
+     * 카운트가 이미 캐시에 있으면 스레드를 쓰지 않고, member.count-executor.await-timeout 안에 끝나지 않으면
+     * 호출한 트랜잭션에서 직접 센다.
+     */
+    @Override
+    public Page<MemberTeamDto> searchPageConcurrent(MemberSearchCondition condition, Pageable pageable) {
+        LongSupplier countQuery = () -> countCache.get(condition, () -> searchQueryCache.count(condition));
+        Long cachedTotal = countCache.getIfPresent(condition);
+        CompletableFuture<Long> total = cachedTotal != null
+                ? CompletableFuture.completedFuture(cachedTotal)
+                : countQueryExecutor.submit(countQuery);
+
+        List<MemberTeamDto> content = searchMetrics.content("searchPageConcurrent", condition,
+                () -> searchQueryCache.search(condition, pageable.getOffset(), pageable.getPageSize()));
+
+        //카운트가 늦으면 이 트랜잭션의 커넥션으로 직접 셈(커넥션 풀 고갈 방지)
+        Page<MemberTeamDto> page = searchMetrics.page("searchPageConcurrent", condition, content, pageable,
+                () -> cachedTotal, () -> countQueryExecutor.await(total, countQuery));
+        //카운트가 필요없는 페이지면 아직 시작하지 않은 카운트는 취소(실행중인 카운트는 끝나면 캐시에만 남음)
+        total.cancel(false);
+        return page;
+    }
+
+    /**
+     * 메모리 컬럼 스냅샷(MemberSnapshot)에서 조회하고 스냅샷이 꺼져 있거나 쓸 수 없으면 DB에서 조회한다.
+     * 스냅샷과 결과 순서(회원 id 순서)가 같은 지연 조인 페이징을 대신 사용
+     */
+    @Override
+    public Page<MemberTeamDto> searchPageSnapshot(MemberSearchCondition condition, Pageable pageable) {
+        MemberSnapshot memberSnapshot = snapshot.getIfAvailable();
+        Page<MemberTeamDto> page = memberSnapshot != null ? memberSnapshot.searchPage(condition, pageable) : null;
+        return page != null ? page : searchPageDeferredJoin(condition, pageable);
+    }
+
+    /**
+     * 카운트 쿼리 없이 한 건 더 조회해서 다음 페이지 여부만 확인
+     * offset 페이징은 정렬이 고정돼야 페이지가 겹치거나 빠지지 않으므로 회원 id 순서로만 조회한다.
+     * 정렬이 있는 Pageable은 받지 않는다. (/v5는 정렬 파라미터를 400으로 거절)
+     */
+    @Override
+    public Slice<MemberTeamDto> searchSlice(MemberSearchCondition condition, Pageable pageable) {
+        int pageSize = pageable.getPageSize();
+        List<MemberTeamDto> content = searchMetrics.content("searchSlice", condition,
+                () -> searchQueryCache.search(condition, pageable.getOffset(), pageSize + 1));
+
+        boolean hasNext = content.size() > pageSize;
+        return new SliceImpl<>(hasNext ? content.subList(0, pageSize) : content, pageable, hasNext);
     }
 
     //조건을 조합으로 사용가능
@@ -173,4 +211,5 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
     private BooleanExpression ageLoe(Integer ageLoe) {
         return ageLoe != null ? member.age.loe(ageLoe) : null;
     }
+
 }
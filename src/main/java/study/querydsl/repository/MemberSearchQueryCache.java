@@ -0,0 +1,358 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.support.CountQueryBuilder;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 회원 검색 쿼리 캐시
+ * 검색 조건 6개와 회원명 인덱스 후보 id가 있는지 없는지에 따라 쿼리 모양은 128가지뿐이므로 생성 시점에 모양별 JPQL을 미리 직렬화해두고
+ * 요청마다 파라미터만 바인딩한다. 모양별 JPQL 문자열이 고정되어 하이버네이트 쿼리 플랜 캐시도 재사용된다.
+ *
+ * 외래키 프로젝션(member.search.foreign-key-projection, 기본값 true)을 켜면 팀 id는 member.team_id 컬럼에서 바로 읽고
+ * 팀 이름은 TeamNameDictionary에서 채운다. 팀 이름 조건이 있을때만 team을 조인하므로 나이 조건 검색 등은 member만 읽는다.
+ * 사전은 커밋 후에 갱신되므로 팀 변경을 flush한 트랜잭션 안에서는 팀을 조인해서 자기 변경을 읽는다.
+ *
+ * 페이징 쿼리는 페이지가 겹치거나 빠지지 않도록 지연 조인과 같은 회원 id 순서로 정렬한다.
+ *
+ * 회원명 부분/접두어 검색은 UsernamePredicates로 후보 회원 id를 먼저 찾아서 member.id in (...) 으로 좁히고
+ * LIKE로 한번 더 거른다. 후보가 member.username-index.max-ids 보다 많으면 LIKE로만 거른다.
+ */
+@Component
+public class MemberSearchQueryCache {
+
+    public static final int USERNAME = 1;
+    public static final int TEAM_NAME = 1 << 1;
+    public static final int AGE_GOE = 1 << 2;
+    public static final int AGE_LOE = 1 << 3;
+    public static final int USERNAME_CONTAINS = 1 << 4;
+    public static final int USERNAME_STARTS_WITH = 1 << 5;
+    public static final int MEMBER_IDS = 1 << 6; // 조건이 아니라 UsernameIndex가 후보 id를 찾았을때 붙는 모양
+    private static final int SHAPES = 1 << 7;
+
+    private static final Param<String> USERNAME_PARAM = new Param<>(String.class, "username");
+    private static final Param<String> TEAM_NAME_PARAM = new Param<>(String.class, "teamName");
+    private static final Param<Integer> AGE_GOE_PARAM = new Param<>(Integer.class, "ageGoe");
+    private static final Param<Integer> AGE_LOE_PARAM = new Param<>(Integer.class, "ageLoe");
+    private static final Param<String> USERNAME_CONTAINS_PARAM = new Param<>(String.class, "usernameContains");
+    private static final Param<String> USERNAME_STARTS_WITH_PARAM = new Param<>(String.class, "usernameStartsWith");
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final Param<Collection<Long>> MEMBER_IDS_PARAM = new Param(Collection.class, "memberIds");
+    private static final char LIKE_ESCAPE = '!';
+
+    private static final QMemberTeamDto PROJECTION = new QMemberTeamDto(
+            member.id.as("memberId"),
+            member.username,
+            member.age,
+            team.id.as("teamId"),
+            team.name.as("teamName"));
+
+    //외래키 프로젝션, team.id 대신 member.team.id (하이버네이트가 조인 없이 team_id 컬럼으로 바꿈)
+    private static final Expression<?>[] FOREIGN_KEY_PROJECTION = {
+            member.id,
+            member.username,
+            member.age,
+            member.team.id};
+
+    private final EntityManager em;
+    private final TeamNameDictionary teamNames;
+    private final UsernamePredicates usernamePredicates;
+    private final boolean foreignKeyProjection;
+    private final CompiledQuery[] contentQueries = new CompiledQuery[SHAPES];
+    private final CompiledQuery[] joinContentQueries = new CompiledQuery[SHAPES]; // 팀 변경을 flush한 트랜잭션용
+    private final CompiledQuery[] pageQueries = new CompiledQuery[SHAPES]; // 컨텐츠 쿼리 + order by member.id
+    private final CompiledQuery[] joinPageQueries = new CompiledQuery[SHAPES];
+    private final CompiledQuery[] countQueries = new CompiledQuery[SHAPES];
+    private final CompiledQuery[] idQueries = new CompiledQuery[SHAPES];
+
+    public MemberSearchQueryCache(EntityManager em, TeamNameDictionary teamNames, UsernamePredicates usernamePredicates,
+                                  @Value("${member.search.foreign-key-projection:true}") boolean foreignKeyProjection) {
+        this.em = em;
+        this.teamNames = teamNames;
+        this.usernamePredicates = usernamePredicates;
+        this.foreignKeyProjection = foreignKeyProjection;
+        for (int shape = 0; shape < SHAPES; shape++) {
+            JPAQuery<?> joinQuery = joinTeam(new JPAQuery<>()
+                    .select(PROJECTION)
+                    .from(member), shape)
+                    .where(predicates(shape));
+            JPAQuery<?> contentQuery = usesForeignKey(shape)
+                    ? new JPAQuery<>().select(FOREIGN_KEY_PROJECTION).from(member).where(predicates(shape))
+                    : joinQuery;
+            contentQueries[shape] = compile(contentQuery.getMetadata());
+            joinContentQueries[shape] = contentQuery == joinQuery ? contentQueries[shape] : compile(joinQuery.getMetadata());
+            pageQueries[shape] = compile(orderedById(contentQuery.getMetadata()));
+            joinPageQueries[shape] = contentQuery == joinQuery ? pageQueries[shape] : compile(orderedById(joinQuery.getMetadata()));
+            //팀 이름 조건이 없으면 join이 빠진 count(member)
+            countQueries[shape] = compile(CountQueryBuilder.countMetadata(contentQuery.getMetadata()));
+            //id만 조회할때는 팀 이름 조건이 없으면 조인할 필요가 없음
+            JPAQuery<Long> idQuery = new JPAQuery<>().select(member.id).from(member);
+            if ((shape & TEAM_NAME) != 0) {
+                idQuery.join(member.team, team);
+            }
+            idQueries[shape] = compile(idQuery
+                    .where(predicates(shape))
+                    .orderBy(member.id.asc())
+                    .getMetadata());
+        }
+    }
+
+    //조건에 값이 있는 필터를 비트로 표시
+    public static int shapeOf(MemberSearchCondition condition) {
+        int shape = 0;
+        if (hasText(condition.getUsername())) shape |= USERNAME;
+        if (hasText(condition.getTeamName())) shape |= TEAM_NAME;
+        if (condition.getAgeGoe() != null) shape |= AGE_GOE;
+        if (condition.getAgeLoe() != null) shape |= AGE_LOE;
+        if (hasText(condition.getUsernameContains())) shape |= USERNAME_CONTAINS;
+        if (hasText(condition.getUsernameStartsWith())) shape |= USERNAME_STARTS_WITH;
+        return shape;
+    }
+
+    //메트릭 태그 등에 쓰는 모양 이름 ex) teamName+ageGoe, 조건이 없으면 none
+    public static String shapeName(int shape) {
+        StringJoiner name = new StringJoiner("+");
+        if ((shape & USERNAME) != 0) name.add("username");
+        if ((shape & TEAM_NAME) != 0) name.add("teamName");
+        if ((shape & AGE_GOE) != 0) name.add("ageGoe");
+        if ((shape & AGE_LOE) != 0) name.add("ageLoe");
+        if ((shape & USERNAME_CONTAINS) != 0) name.add("usernameContains");
+        if ((shape & USERNAME_STARTS_WITH) != 0) name.add("usernameStartsWith");
+        if ((shape & MEMBER_IDS) != 0) name.add("memberIds");
+        return shape == 0 ? "none" : name.toString();
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        Query query = createQuery(teamNamesUsable() ? contentQueries : joinContentQueries, condition);
+        return query != null ? fetch(query.getResultList()) : new ArrayList<>();
+    }
+
+    //회원 id 순서로 offset부터 limit건
+    public List<MemberTeamDto> search(MemberSearchCondition condition, long offset, int limit) {
+        Query query = createQuery(teamNamesUsable() ? pageQueries : joinPageQueries, condition);
+        if (query == null) {
+            return new ArrayList<>();
+        }
+        query.setFirstResult(Math.toIntExact(offset))
+                .setMaxResults(limit);
+        return fetch(query.getResultList());
+    }
+
+    /**
+     * 지연 조인(deferred join) 페이징
+     * 1단계에서 조건에 맞는 회원 id만 offset/limit으로 고르고, 2단계에서 그 id들만 팀과 조인해서 DTO로 조회한다.
+     * offset이 클수록 버려지는 행을 조인/프로젝션하지 않는 만큼 이득이 크다. 결과는 회원 id 순서
+     */
+    @SuppressWarnings("unchecked")
+    public List<MemberTeamDto> searchDeferredJoin(MemberSearchCondition condition, long offset, int limit) {
+        Query idQuery = createQuery(idQueries, condition);
+        List<Long> ids = idQuery != null
+                ? idQuery.setFirstResult(Math.toIntExact(offset)).setMaxResults(limit).getResultList()
+                : new ArrayList<>();
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<MemberTeamDto> rows = teamNamesUsable()
+                ? fetch(toArrays(new JPAQuery<>(em)
+                .select(FOREIGN_KEY_PROJECTION)
+                .from(member)
+                .where(member.id.in(ids))
+                .fetch()))
+                : new JPAQuery<>(em)
+                .select(PROJECTION)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.id.in(ids))
+                .fetch();
+
+        //IN 조회는 순서를 보장하지 않으므로 1단계의 id 순서로 다시 정렬
+        Map<Long, MemberTeamDto> byId = new HashMap<>();
+        for (MemberTeamDto row : rows) {
+            byId.put(row.getMemberId(), row);
+        }
+        List<MemberTeamDto> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            MemberTeamDto row = byId.get(id);
+            if (row != null) { // 두 조회 사이에 삭제된 회원은 빠짐
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    public long count(MemberSearchCondition condition) {
+        Query query = createQuery(countQueries, condition);
+        return query != null ? (Long) query.getSingleResult() : 0L;
+    }
+
+    /**
+     * 팀 이름을 TeamNameDictionary에서 채울 수 있는지
+     * 사전은 커밋 후에 갱신되므로 현재 트랜잭션이 팀 변경을 flush 했으면 팀을 조인해야 자기 변경이 보인다.
+     * 아직 flush 되지 않은 팀 변경도 표시되도록 먼저 flush한다.
+     */
+    private boolean teamNamesUsable() {
+        if (!foreignKeyProjection) {
+            return false;
+        }
+        if (em.isJoinedToTransaction()) {
+            em.flush();
+        }
+        return !teamNames.isChangedInCurrentTransaction();
+    }
+
+    //팀 이름 조건이 있으면 조인해서 팀 이름까지 조회
+    private boolean usesForeignKey(int shape) {
+        return foreignKeyProjection && (shape & TEAM_NAME) == 0;
+    }
+
+    /**
+     * 팀 이름 조건이 있으면 팀이 없는 회원은 어차피 걸러지므로 inner join으로 바꾼다.
+     * left join이면 DB가 항상 member부터 읽어야 하지만 inner join이면 팀 이름 인덱스로 팀을 먼저 찾고
+     * (team_id, age) 인덱스로 회원을 찾을 수 있다.
+     */
+    private static <T> JPAQuery<T> joinTeam(JPAQuery<T> query, int shape) {
+        return (shape & TEAM_NAME) != 0
+                ? query.join(member.team, team)
+                : query.leftJoin(member.team, team);
+    }
+
+    private static Predicate[] predicates(int shape) {
+        return new Predicate[]{
+                (shape & USERNAME) != 0 ? member.username.eq(USERNAME_PARAM) : null,
+                (shape & TEAM_NAME) != 0 ? team.name.eq(TEAM_NAME_PARAM) : null,
+                (shape & AGE_GOE) != 0 ? member.age.goe(AGE_GOE_PARAM) : null,
+                (shape & AGE_LOE) != 0 ? member.age.loe(AGE_LOE_PARAM) : null,
+                (shape & MEMBER_IDS) != 0 ? Expressions.booleanOperation(Ops.IN, member.id, MEMBER_IDS_PARAM) : null,
+                (shape & USERNAME_CONTAINS) != 0 ? member.username.like(USERNAME_CONTAINS_PARAM, LIKE_ESCAPE) : null,
+                (shape & USERNAME_STARTS_WITH) != 0 ? member.username.like(USERNAME_STARTS_WITH_PARAM, LIKE_ESCAPE) : null
+        };
+    }
+
+    private static QueryMetadata orderedById(QueryMetadata metadata) {
+        QueryMetadata ordered = metadata.clone();
+        ordered.addOrderBy(member.id.asc());
+        return ordered;
+    }
+
+    private static CompiledQuery compile(QueryMetadata metadata) {
+        JPQLSerializer serializer = new JPQLSerializer(HQLTemplates.DEFAULT);
+        serializer.serialize(metadata, false, null);
+        return new CompiledQuery(serializer.toString(), new ArrayList<>(serializer.getConstants()));
+    }
+
+    /**
+     * 조건 모양에 맞는 쿼리에 파라미터를 바인딩한다.
+     * 회원명 부분/접두어 조건이 있으면 UsernamePredicates로 후보 id를 찾아 MEMBER_IDS 모양을 쓰고,
+     * 후보가 하나도 없으면 DB를 조회할 필요가 없으므로 null
+     */
+    private Query createQuery(CompiledQuery[] queries, MemberSearchCondition condition) {
+        int shape = shapeOf(condition);
+        Set<Long> memberIds = null;
+        if ((shape & (USERNAME_CONTAINS | USERNAME_STARTS_WITH)) != 0) {
+            memberIds = usernamePredicates.candidateIds(
+                    (shape & USERNAME_CONTAINS) != 0 ? condition.getUsernameContains() : null,
+                    (shape & USERNAME_STARTS_WITH) != 0 ? condition.getUsernameStartsWith() : null);
+            if (memberIds != null && memberIds.isEmpty()) {
+                return null;
+            }
+            if (memberIds != null) {
+                shape |= MEMBER_IDS;
+            }
+        }
+
+        Map<ParamExpression<?>, Object> params = new HashMap<>();
+        params.put(USERNAME_PARAM, condition.getUsername());
+        params.put(TEAM_NAME_PARAM, condition.getTeamName());
+        params.put(AGE_GOE_PARAM, condition.getAgeGoe());
+        params.put(AGE_LOE_PARAM, condition.getAgeLoe());
+        params.put(USERNAME_CONTAINS_PARAM, "%" + escapeLike(condition.getUsernameContains()) + "%");
+        params.put(USERNAME_STARTS_WITH_PARAM, escapeLike(condition.getUsernameStartsWith()) + "%");
+        params.put(MEMBER_IDS_PARAM, memberIds);
+
+        CompiledQuery compiled = queries[shape];
+        Query query = em.createQuery(compiled.jpql);
+        JPAUtil.setConstants(query, compiled.constants, params); // 모양에 포함된 파라미터만 바인딩됨
+        return query;
+    }
+
+    private static String escapeLike(String value) {
+        if (value == null) {
+            return null;
+        }
+        return value.replace(String.valueOf(LIKE_ESCAPE), LIKE_ESCAPE + String.valueOf(LIKE_ESCAPE))
+                .replace("%", LIKE_ESCAPE + "%")
+                .replace("_", LIKE_ESCAPE + "_");
+    }
+
+    //외래키 프로젝션 결과(팀 이름 없음)는 사전에서 팀 이름을 채움
+    @SuppressWarnings("unchecked")
+    private List<MemberTeamDto> fetch(List<?> resultList) {
+        List<Object[]> rows = (List<Object[]>) resultList;
+        List<MemberTeamDto> result = new ArrayList<>(rows.size());
+        if (rows.isEmpty() || rows.get(0).length == PROJECTION.getArgs().size()) {
+            for (Object[] row : rows) {
+                result.add(PROJECTION.newInstance(row));
+            }
+            return result;
+        }
+
+        List<Long> teamIds = new ArrayList<>();
+        for (Object[] row : rows) {
+            teamIds.add((Long) row[3]);
+        }
+        Map<Long, String> names = teamNames.resolve(teamIds);
+        for (Object[] row : rows) {
+            result.add(new MemberTeamDto((Long) row[0], (String) row[1], (Integer) row[2],
+                    (Long) row[3], names.get((Long) row[3])));
+        }
+        return result;
+    }
+
+    private static List<Object[]> toArrays(List<Tuple> tuples) {
+        List<Object[]> rows = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            rows.add(tuple.toArray());
+        }
+        return rows;
+    }
+
+    private static class CompiledQuery {
+        private final String jpql;
+        private final List<Object> constants;
+
+        private CompiledQuery(String jpql, List<Object> constants) {
+            this.jpql = jpql;
+            this.constants = constants;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.support.KeysetSlice;
+import study.querydsl.repository.support.Querydsl4RepositorySupport;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@Repository
+@Transactional(readOnly = true) // 조회만 하므로 복제본으로 보냄 (ReplicaRoutingDataSource)
+public class MemberSupportRepository extends Querydsl4RepositorySupport {
+
+    private final UsernamePredicates usernamePredicates;
+
+    public MemberSupportRepository(UsernamePredicates usernamePredicates) {
+        super(Member.class);
+        this.usernamePredicates = usernamePredicates;
+    }
+
+    //나이, 회원id 순으로 키셋 페이징
+    public KeysetSlice<MemberTeamDto> searchKeyset(MemberSearchCondition condition, String cursor, int size) {
+        return applyKeyset(cursor, size, member.age, member.id,
+                MemberTeamDto::getAge, MemberTeamDto::getMemberId,
+                query -> query
+                        .select(new QMemberTeamDto(
+                                member.id.as("memberId"),
+                                member.username,
+                                member.age,
+                                team.id.as("teamId"),
+                                team.name.as("teamName")))
+                        .from(member)
+                        .leftJoin(member.team, team)
+                        .where(
+                                usernameEq(condition.getUsername()),
+                                teamNameEq(condition.getTeamName()),
+                                ageGoe(condition.getAgeGoe()),
+                                ageLoe(condition.getAgeLoe()),
+                                usernamePredicates.of(condition)
+                        ));
+    }
+
+    //컨텐츠와 카운트 쿼리를 동시에 실행하는 페이징
+    public Page<MemberTeamDto> searchPageConcurrent(MemberSearchCondition condition, Pageable pageable) {
+        return applyPaginationConcurrently(pageable,
+                contentQuery -> contentQuery
+                        .select(new QMemberTeamDto(
+                                member.id.as("memberId"),
+                                member.username,
+                                member.age,
+                                team.id.as("teamId"),
+                                team.name.as("teamName")))
+                        .from(member)
+                        .leftJoin(member.team, team)
+                        .where(
+                                usernameEq(condition.getUsername()),
+                                teamNameEq(condition.getTeamName()),
+                                ageGoe(condition.getAgeGoe()),
+                                ageLoe(condition.getAgeLoe()),
+                                usernamePredicates.of(condition)
+                        ),
+                countQuery -> countQuery
+                        .selectFrom(member)
+                        .leftJoin(member.team, team)
+                        .where(
+                                usernameEq(condition.getUsername()),
+                                teamNameEq(condition.getTeamName()),
+                                ageGoe(condition.getAgeGoe()),
+                                ageLoe(condition.getAgeLoe()),
+                                usernamePredicates.of(condition)
+                        ));
+    }
+
+    private BooleanExpression usernameEq(String username) {
+        return hasText(username) ? member.username.eq(username) : null;
+    }
+
+    private BooleanExpression teamNameEq(String teamName) {
+        return hasText(teamName) ? team.name.eq(teamName) : null;
+    }
+
+    private BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    }
+
+    private BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    }
+
+}
@@ -0,0 +1,132 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import study.querydsl.entity.Team;
+import study.querydsl.event.EntityChangedEvent;
+import study.querydsl.event.TransactionChanges;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnitUtil;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 팀 id -> 팀 이름 사전
+ * 회원 검색에서 team_id 외래키만 조회하고 팀 이름은 여기서 채워서 team 조인을 없앤다. (MemberSearchQueryCache)
+ * 팀 insert/update/delete는 커밋 후에 반영하므로 다른 트랜잭션에는 커밋되지 않은 팀 이름이 보이지 않는다.
+ * 팀 변경을 flush한 트랜잭션은 커밋 전까지 사전에 자기 변경이 없으므로 isChangedInCurrentTransaction()으로 확인하고
+ * 팀을 조인해서 조회해야 한다.
+ * 사전에 없는 팀은 IN 쿼리 한번으로 읽어서 채운다.
+ */
+@Component
+public class TeamNameDictionary {
+
+    private final JPAQueryFactory queryFactory;
+    private final PersistenceUnitUtil persistenceUnitUtil;
+
+    private final Map<Long, String> names = new ConcurrentHashMap<>();
+    private long version; // 조회 도중 변경된 이름을 덮어쓰지 않도록 확인, this로 동기화
+
+    public TeamNameDictionary(JPAQueryFactory queryFactory, EntityManagerFactory entityManagerFactory) {
+        this.queryFactory = queryFactory;
+        this.persistenceUnitUtil = entityManagerFactory.getPersistenceUnitUtil();
+    }
+
+    //팀 id별 이름, 없는 팀(삭제됨)은 결과에 포함되지 않음
+    public Map<Long, String> resolve(Collection<Long> teamIds) {
+        Map<Long, String> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long teamId : teamIds) {
+            if (teamId == null || result.containsKey(teamId)) {
+                continue;
+            }
+            String name = names.get(teamId);
+            if (name != null) {
+                result.put(teamId, name);
+            } else if (!missing.contains(teamId)) {
+                missing.add(teamId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            result.putAll(load(missing));
+        }
+        return result;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    //현재 트랜잭션이 커밋되지 않은 팀 변경을 flush 했는지
+    public boolean isChangedInCurrentTransaction() {
+        return TransactionChanges.isChanged(this);
+    }
+
+    //팀 변경을 flush한 트랜잭션 표시, 트랜잭션이 끝나면 해제
+    @EventListener
+    public void onFlushed(EntityChangedEvent event) {
+        if (event.isAbout(Team.class)) {
+            TransactionChanges.markChanged(this);
+        }
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommitted(EntityChangedEvent event) {
+        if (!event.isAbout(Team.class)) {
+            return;
+        }
+        synchronized (this) {
+            version++;
+            if (event.isBulk()) {
+                names.clear();
+                return;
+            }
+            Long teamId = (Long) persistenceUnitUtil.getIdentifier(event.getEntity());
+            String name = (String) event.get("name");
+            if (event.getType() == EntityChangedEvent.ChangeType.REMOVE || name == null) {
+                names.remove(teamId);
+            } else {
+                names.put(teamId, name);
+            }
+        }
+    }
+
+    private Map<Long, String> load(List<Long> teamIds) {
+        long before;
+        synchronized (this) {
+            before = version;
+        }
+        List<Tuple> rows = queryFactory
+                .select(team.id, team.name)
+                .from(team)
+                .where(team.id.in(teamIds))
+                .fetch();
+
+        Map<Long, String> loaded = new HashMap<>();
+        for (Tuple row : rows) {
+            String name = row.get(team.name);
+            if (name != null) {
+                loaded.put(row.get(team.id), name);
+            }
+        }
+        synchronized (this) {
+            if (version == before) {
+                names.putAll(loaded);
+            }
+        }
+        return loaded;
+    }
+}
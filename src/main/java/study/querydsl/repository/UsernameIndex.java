@@ -0,0 +1,326 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.event.EntityChangedEvent;
+import study.querydsl.event.TransactionChanges;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnitUtil;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원 이름 부분 검색(contains), 접두어 검색(startsWith)용 메모리 인덱스
+ * LIKE '%x%'는 인덱스를 탈 수 없어서 풀 스캔이므로 여기서 먼저 후보 회원 id를 찾고 DB는 그 id들만 읽는다.
+ * - contains: 이름을 3글자 단위(trigram)로 나눈 역색인에서 가장 작은 후보 집합을 골라 실제로 포함하는지 확인
+ *   (검색어가 3글자보다 짧으면 전체 이름을 확인)
+ * - startsWith: 이름순 정렬 맵의 범위 조회
+ * 회원 insert/update/delete 이벤트로 커밋 후에 갱신한다. 벌크 delete나 회원명을 바꾸는 벌크 update처럼 어떤 이름이
+ * 바뀌었는지 알 수 없으면 인덱스를 버리고 별도 스레드에서 DB 전체를 읽어 새로 만든다. (나이만 바꾸는 벌크 update 등은 무시)
+ * 만드는 동안 커밋된 변경은 모아뒀다가 이어서 반영하고, 인덱스가 없는 동안 match는 null을 돌려줘서 DB LIKE로만 거르게 한다.
+ * 커밋되지 않은 이름은 인덱스에 없으므로 회원 변경을 flush한 트랜잭션은 isChangedInCurrentTransaction()으로 확인하고
+ * 인덱스 없이 LIKE로만 걸러야 한다.
+ * 후보에 남은 회원이 있어도 DB에서 LIKE 조건으로 한번 더 거르므로 결과는 항상 DB 기준이다.
+ */
+@Slf4j
+@Component
+public class UsernameIndex implements DisposableBean {
+
+    private static final int GRAM = 3;
+
+    private final JPAQueryFactory queryFactory;
+    private final PersistenceUnitUtil persistenceUnitUtil;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService rebuildExecutor =
+            Executors.newSingleThreadExecutor(new CustomizableThreadFactory("username-index-"));
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Entries entries; // null이면 stale, 처음 검색때 만듦
+    private boolean rebuilding;
+    private boolean rebuildAgain; // 만드는 도중 이름을 바꾸는 벌크 변경이 커밋됨
+    private long generation; // 나중에 시작한 재생성만 결과를 반영
+    private final List<EntityChangedEvent> pending = new ArrayList<>(); // 만드는 도중 커밋된 변경
+
+    public UsernameIndex(JPAQueryFactory queryFactory, EntityManagerFactory entityManagerFactory,
+                         PlatformTransactionManager transactionManager) {
+        this.queryFactory = queryFactory;
+        this.persistenceUnitUtil = entityManagerFactory.getPersistenceUnitUtil();
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 이름에 contains를 포함하고 startsWith로 시작하는 회원 id 후보 (null인 조건은 무시)
+     * 후보가 limit개보다 많으면 id로 좁히는 의미가 없으므로 null, 인덱스를 만드는 중이어도 null
+     */
+    public Set<Long> match(String contains, String startsWith, int limit) {
+        lock.readLock().lock();
+        try {
+            if (entries != null) {
+                Set<Long> byContains = contains != null ? entries.contains(contains, limit) : null;
+                Set<Long> byPrefix = startsWith != null ? entries.startsWith(startsWith, limit) : null;
+                if (byContains == null || byPrefix == null) {
+                    return byContains != null ? byContains : byPrefix; // 선택도가 낮은 조건은 DB LIKE로만 거름
+                }
+                byContains.retainAll(byPrefix);
+                return byContains;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        requestRebuild();
+        return null;
+    }
+
+    //DB에서 바로 다시 만듦 (호출한 스레드에서 실행)
+    public void refresh() {
+        long current;
+        lock.writeLock().lock();
+        try {
+            entries = null;
+            rebuilding = true;
+            pending.clear();
+            current = ++generation;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        rebuild(current);
+    }
+
+    //현재 트랜잭션이 커밋되지 않은 회원 변경을 flush 했는지
+    public boolean isChangedInCurrentTransaction() {
+        return TransactionChanges.isChanged(this);
+    }
+
+    //회원 변경을 flush한 트랜잭션 표시, 트랜잭션이 끝나면 해제
+    @EventListener
+    public void onFlushed(EntityChangedEvent event) {
+        if (event.isAbout(Member.class)) {
+            TransactionChanges.markChanged(this);
+        }
+    }
+
+    //롤백된 이름이 다른 트랜잭션에 보이지 않도록 커밋 후에 반영
+    //인덱스를 다시 만들면서 이미 읽은 변경이 다시 와도 결과는 같음
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommitted(EntityChangedEvent event) {
+        if (!event.isAbout(Member.class) || !event.mayChange("username")) {
+            return;
+        }
+        boolean unknown = event.isBulk()
+                || (event.getType() == EntityChangedEvent.ChangeType.UPDATE && event.getOldState() == null);
+        lock.writeLock().lock();
+        try {
+            if (unknown) {
+                entries = null;
+                if (rebuilding) {
+                    rebuildAgain = true;
+                }
+            } else if (entries != null) {
+                apply(entries, event);
+            } else if (rebuilding) {
+                pending.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (unknown) {
+            requestRebuild();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    private void requestRebuild() {
+        long current;
+        lock.writeLock().lock();
+        try {
+            if (rebuilding || entries != null) {
+                return;
+            }
+            rebuilding = true;
+            pending.clear();
+            current = ++generation;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        rebuildExecutor.execute(() -> rebuild(current));
+    }
+
+    private void rebuild(long current) {
+        Entries loaded;
+        try {
+            loaded = readOnlyTransaction.execute(status -> load());
+        } catch (RuntimeException e) {
+            log.warn("username index rebuild failed", e);
+            lock.writeLock().lock();
+            try {
+                if (current == generation) {
+                    rebuilding = false; // 다음 검색때 다시 시도
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (current != generation) {
+                return; // refresh 등으로 나중에 시작한 재생성이 반영함
+            }
+            if (rebuildAgain) {
+                rebuildAgain = false;
+                pending.clear();
+                long next = ++generation;
+                rebuildExecutor.execute(() -> rebuild(next));
+                return;
+            }
+            for (EntityChangedEvent event : pending) {
+                apply(loaded, event);
+            }
+            pending.clear();
+            entries = loaded;
+            rebuilding = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("username index rebuilt: {} members", loaded.usernames.size());
+    }
+
+    private Entries load() {
+        Entries loaded = new Entries();
+        for (Tuple row : queryFactory.select(member.id, member.username).from(member).fetch()) {
+            loaded.add(row.get(member.id), row.get(member.username));
+        }
+        return loaded;
+    }
+
+    private void apply(Entries target, EntityChangedEvent event) {
+        Long id = (Long) persistenceUnitUtil.getIdentifier(event.getEntity());
+        if (event.getOldState() != null) {
+            target.remove(id, (String) event.getOld("username"));
+        }
+        if (event.getState() != null) {
+            target.add(id, (String) event.get("username"));
+        }
+    }
+
+    //회원 id -> 이름과 두 역색인, 락 안에서만 읽고 씀
+    private static final class Entries {
+        private final Map<Long, String> usernames = new HashMap<>();
+        private final NavigableMap<String, Set<Long>> byUsername = new TreeMap<>();
+        private final Map<String, Set<Long>> byGram = new HashMap<>();
+
+        private Set<Long> contains(String part, int limit) {
+            Set<Long> result = new HashSet<>();
+            Iterable<Long> candidates = usernames.keySet();
+            if (part.length() >= GRAM) {
+                Set<Long> smallest = null;
+                for (int i = 0; i + GRAM <= part.length(); i++) {
+                    Set<Long> ids = byGram.get(part.substring(i, i + GRAM));
+                    if (ids == null) {
+                        return result;
+                    }
+                    if (smallest == null || ids.size() < smallest.size()) {
+                        smallest = ids;
+                    }
+                }
+                candidates = smallest;
+            }
+            for (Long id : candidates) {
+                String username = usernames.get(id);
+                if (username != null && username.contains(part)) {
+                    result.add(id);
+                    if (result.size() > limit) {
+                        return null;
+                    }
+                }
+            }
+            return result;
+        }
+
+        private Set<Long> startsWith(String prefix, int limit) {
+            Set<Long> result = new HashSet<>();
+            for (Set<Long> ids : byUsername.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+                result.addAll(ids);
+                if (result.size() > limit) {
+                    return null;
+                }
+            }
+            return result;
+        }
+
+        private void add(Long id, String username) {
+            String previous = usernames.put(id, username);
+            if (previous != null) {
+                unindex(id, previous);
+            }
+            if (username != null) {
+                byUsername.computeIfAbsent(username, name -> new HashSet<>()).add(id);
+                for (String gram : gramsOf(username)) {
+                    byGram.computeIfAbsent(gram, g -> new HashSet<>()).add(id);
+                }
+            }
+        }
+
+        private void remove(Long id, String username) {
+            String current = usernames.remove(id);
+            if (current != null) {
+                unindex(id, current);
+            } else if (username != null) {
+                unindex(id, username);
+            }
+        }
+
+        private void unindex(Long id, String username) {
+            removeFrom(byUsername, username, id);
+            for (String gram : gramsOf(username)) {
+                removeFrom(byGram, gram, id);
+            }
+        }
+    }
+
+    private static void removeFrom(Map<String, Set<Long>> postings, String key, Long id) {
+        Set<Long> ids = postings.get(key);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            postings.remove(key);
+        }
+    }
+
+    private static Set<String> gramsOf(String username) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= username.length(); i++) {
+            grams.add(username.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+}
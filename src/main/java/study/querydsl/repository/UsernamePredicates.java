@@ -0,0 +1,63 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+
+import javax.persistence.EntityManager;
+import java.util.Set;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원명 부분/접두어 검색 조건
+ * UsernameIndex에서 후보 회원 id를 찾아서 member.id in (...) 으로 좁히고 LIKE로 한번 더 거른다.
+ * 후보가 member.username-index.max-ids 보다 많거나 현재 트랜잭션이 회원 변경을 flush 했으면 LIKE로만 거른다.
+ * LIKE 특수문자(%, _)는 Querydsl이 문자 그대로 검색되도록 이스케이프한다.
+ */
+@Component
+public class UsernamePredicates {
+
+    private final EntityManager em;
+    private final UsernameIndex usernameIndex;
+    private final int maxIds;
+
+    public UsernamePredicates(EntityManager em, UsernameIndex usernameIndex,
+                              @Value("${member.username-index.max-ids:1000}") int maxIds) {
+        this.em = em;
+        this.usernameIndex = usernameIndex;
+        this.maxIds = maxIds;
+    }
+
+    //where 절에 넣을 조건, 회원명 부분/접두어 조건이 없으면 null
+    public BooleanExpression of(MemberSearchCondition condition) {
+        String contains = hasText(condition.getUsernameContains()) ? condition.getUsernameContains() : null;
+        String startsWith = hasText(condition.getUsernameStartsWith()) ? condition.getUsernameStartsWith() : null;
+        if (contains == null && startsWith == null) {
+            return null;
+        }
+
+        BooleanExpression like = null;
+        if (contains != null) {
+            like = member.username.contains(contains);
+        }
+        if (startsWith != null) {
+            like = like != null ? like.and(member.username.startsWith(startsWith)) : member.username.startsWith(startsWith);
+        }
+        Set<Long> ids = candidateIds(contains, startsWith);
+        return ids != null ? member.id.in(ids).and(like) : like; // 후보가 없으면 in ()은 항상 거짓
+    }
+
+    /**
+     * 후보 회원 id (null인 조건은 무시), 인덱스로 좁힐 수 없으면 null
+     * 인덱스는 커밋 후에 갱신되므로 아직 flush 되지 않은 회원 변경도 먼저 flush해서 현재 트랜잭션의 변경 여부를 확인한다.
+     */
+    public Set<Long> candidateIds(String contains, String startsWith) {
+        if (em.isJoinedToTransaction()) {
+            em.flush();
+        }
+        return usernameIndex.isChangedInCurrentTransaction() ? null : usernameIndex.match(contains, startsWith, maxIds);
+    }
+}
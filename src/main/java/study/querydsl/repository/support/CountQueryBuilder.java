@@ -0,0 +1,188 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import javax.persistence.EntityManager;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 컨텐츠 쿼리에서 최소한의 카운트 쿼리를 만든다. (deprecated 된 fetchCount 대신 사용)
+ * - select 절은 count(루트)로, 정렬/페이징은 버림
+ * - where, on 절 등에서 참조하지 않는 to-one left join은 버림 (행 수가 바뀌지 않음)
+ * - inner join, 컬렉션 join, 연관관계 없는 join은 행 수가 바뀔 수 있으므로 유지
+ * - fetch join은 일반 join으로
+ * - distinct 쿼리는 select 절이 식 하나면 count(distinct 식)으로 (select distinct team.name 은 팀 이름 수를 셈)
+ * group by가 있는 쿼리와 여러 컬럼/DTO를 distinct로 조회하는 쿼리는 지원하지 않는다. (JPQL은 여러 컬럼 count distinct가 없음)
+ */
+public final class CountQueryBuilder {
+
+    private CountQueryBuilder() {
+    }
+
+    public static JPAQuery<Long> countOf(EntityManager em, JPAQuery<?> content) {
+        return new JPAQuery<>(em, countMetadata(content.getMetadata()));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static QueryMetadata countMetadata(QueryMetadata content) {
+        if (!content.getGroupBy().isEmpty()) {
+            throw new IllegalArgumentException("Count query of group by query is not supported");
+        }
+        Expression<?> distinctProjection = content.isDistinct() ? distinctProjectionOf(content) : null;
+        List<JoinExpression> joins = content.getJoins();
+        if (joins.isEmpty()) {
+            throw new IllegalArgumentException("Query has no from clause");
+        }
+
+        //뒤에서부터 필요한 join을 고르면서 남긴 join이 참조하는 별칭도 필요한 것으로 추가
+        Set<Expression<?>> referenced = new HashSet<>();
+        collect(content.getWhere(), referenced);
+        collect(content.getHaving(), referenced);
+        collect(distinctProjection, referenced); // distinct로 세는 식이 참조하는 join은 버리면 안됨
+        boolean[] keep = new boolean[joins.size()];
+        for (int i = joins.size() - 1; i >= 0; i--) {
+            JoinExpression join = joins.get(i);
+            keep[i] = i == 0 || !isDroppable(join) || referenced.contains(aliasOf(join.getTarget()));
+            if (keep[i]) {
+                collect(join.getTarget(), referenced);
+                collect(join.getCondition(), referenced);
+            }
+        }
+
+        DefaultQueryMetadata count = new DefaultQueryMetadata();
+        for (int i = 0; i < joins.size(); i++) {
+            if (keep[i]) {
+                JoinExpression join = joins.get(i);
+                count.addJoin(join.getType(), join.getTarget());
+                if (join.getCondition() != null) {
+                    count.addJoinCondition(join.getCondition());
+                }
+            }
+        }
+        if (content.getWhere() != null) {
+            count.addWhere(content.getWhere());
+        }
+        count.setProjection(distinctProjection != null
+                ? ExpressionUtils.operation(Long.class, Ops.AggOps.COUNT_DISTINCT_AGG, distinctProjection)
+                : ExpressionUtils.operation(Long.class, Ops.AggOps.COUNT_AGG, aliasOf(joins.get(0).getTarget())));
+        for (Map.Entry<ParamExpression<?>, Object> param : content.getParams().entrySet()) {
+            count.setParam((ParamExpression) param.getKey(), param.getValue());
+        }
+        return count;
+    }
+
+    //select distinct 절의 식, select 절이 없으면 루트
+    private static Expression<?> distinctProjectionOf(QueryMetadata content) {
+        Expression<?> projection = content.getProjection();
+        if (projection == null) {
+            return aliasOf(content.getJoins().get(0).getTarget());
+        }
+        if (projection instanceof FactoryExpression) {
+            throw new IllegalArgumentException("Count query of distinct multi-column projection is not supported");
+        }
+        return aliasOf(projection);
+    }
+
+    //left join(member.team, team) 처럼 to-one 연관관계에 대한 left join만 버릴 수 있음
+    private static boolean isDroppable(JoinExpression join) {
+        if (join.getType() != JoinType.LEFTJOIN || !(join.getTarget() instanceof Operation)) {
+            return false;
+        }
+        Operation<?> alias = (Operation<?>) join.getTarget();
+        if (alias.getOperator() != Ops.ALIAS || !(alias.getArg(0) instanceof Path)) {
+            return false;
+        }
+        Class<?> associationType = alias.getArg(0).getType();
+        return !Collection.class.isAssignableFrom(associationType) && !Map.class.isAssignableFrom(associationType);
+    }
+
+    private static Expression<?> aliasOf(Expression<?> target) {
+        if (target instanceof Operation && ((Operation<?>) target).getOperator() == Ops.ALIAS) {
+            return ((Operation<?>) target).getArg(1);
+        }
+        return target;
+    }
+
+    private static void collect(Expression<?> expression, Set<Expression<?>> roots) {
+        if (expression != null) {
+            expression.accept(RootCollector.INSTANCE, roots);
+        }
+    }
+
+    //식에서 사용하는 경로의 루트(별칭)를 모음
+    private static final class RootCollector implements Visitor<Void, Set<Expression<?>>> {
+
+        private static final RootCollector INSTANCE = new RootCollector();
+
+        @Override
+        public Void visit(Constant<?> expr, Set<Expression<?>> roots) {
+            return null;
+        }
+
+        @Override
+        public Void visit(FactoryExpression<?> expr, Set<Expression<?>> roots) {
+            expr.getArgs().forEach(arg -> collect(arg, roots));
+            return null;
+        }
+
+        @Override
+        public Void visit(Operation<?> expr, Set<Expression<?>> roots) {
+            expr.getArgs().forEach(arg -> collect(arg, roots));
+            return null;
+        }
+
+        @Override
+        public Void visit(ParamExpression<?> expr, Set<Expression<?>> roots) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Path<?> expr, Set<Expression<?>> roots) {
+            roots.add(expr.getRoot());
+            return null;
+        }
+
+        //상관 서브쿼리가 바깥 별칭을 참조할 수 있음
+        @Override
+        public Void visit(SubQueryExpression<?> expr, Set<Expression<?>> roots) {
+            QueryMetadata metadata = expr.getMetadata();
+            for (JoinExpression join : metadata.getJoins()) {
+                collect(join.getTarget(), roots);
+                collect(join.getCondition(), roots);
+            }
+            collect(metadata.getWhere(), roots);
+            collect(metadata.getHaving(), roots);
+            collect(metadata.getProjection(), roots);
+            return null;
+        }
+
+        @Override
+        public Void visit(TemplateExpression<?> expr, Set<Expression<?>> roots) {
+            for (Object arg : expr.getArgs()) {
+                if (arg instanceof Expression) {
+                    collect((Expression<?>) arg, roots);
+                }
+            }
+            return null;
+        }
+    }
+}
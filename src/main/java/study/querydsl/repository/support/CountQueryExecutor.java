@@ -0,0 +1,85 @@
+package study.querydsl.repository.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+
+/**
+ * 페이징 카운트 쿼리를 컨텐츠 쿼리와 동시에 실행하기 위한 실행기
+ * 카운트는 작업 스레드의 별도 읽기 전용 트랜잭션(별도 EntityManager)에서 실행되므로
+ * 호출한 트랜잭션에서 아직 커밋되지 않은 변경은 보이지 않는다.
+ * 큐가 가득 차면 호출 스레드에서 바로 실행한다. (CallerRunsPolicy)
+ * <p>
+ * 호출한 스레드는 자기 커넥션을 잡은 채로 카운트를 기다리므로, 동시 요청이 커넥션 풀을 다 쓰고 있으면
+ * 작업 스레드가 커넥션을 얻지 못해 서로 기다리게 된다.
+ * - 작업 스레드 수(member.count-executor.threads)가 동시에 더 쓰는 커넥션 수의 상한이므로 풀 크기보다 충분히 작게 둔다.
+ * - await-timeout 안에 끝나지 않으면 기다리던 카운트를 취소하고 호출 스레드의 커넥션으로 바로 센다.
+ * - 카운트가 필요없는 페이지면 호출한 쪽에서 cancel(false)로 취소해서 큐에 남은 카운트가 커넥션을 잡지 않게 한다.
+ */
+@Slf4j
+@Component
+public class CountQueryExecutor implements DisposableBean {
+
+    private final TransactionTemplate readOnlyTransaction;
+    private final ThreadPoolExecutor executor;
+    private final Duration awaitTimeout;
+
+    public CountQueryExecutor(PlatformTransactionManager transactionManager,
+                              @Value("${member.count-executor.threads:4}") int threads,
+                              @Value("${member.count-executor.queue-capacity:100}") int queueCapacity,
+                              @Value("${member.count-executor.await-timeout:200ms}") Duration awaitTimeout) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("count-query-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.awaitTimeout = awaitTimeout;
+    }
+
+    public CompletableFuture<Long> submit(LongSupplier countQuery) {
+        return CompletableFuture.supplyAsync(
+                () -> readOnlyTransaction.execute(status -> countQuery.getAsLong()), executor);
+    }
+
+    /**
+     * await-timeout까지 카운트를 기다리고, 넘으면 취소한 뒤 호출 스레드에서 fallback으로 센다.
+     * 예외는 CompletionException/ExecutionException을 벗겨서 원래 예외를 던짐
+     */
+    public long await(CompletableFuture<Long> count, LongSupplier fallback) {
+        try {
+            return count.get(awaitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            count.cancel(false);
+            log.debug("count query did not finish in {}, counting on caller thread", awaitTimeout);
+            return fallback.getAsLong();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            count.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for count query", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,16 @@
+package study.querydsl.repository.support;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 클라이언트가 보낸 키셋 커서를 해석할 수 없음, 컨트롤러 밖으로 나가면 400으로 응답한다.
+ * IllegalArgumentException이면 @Repository 예외 변환이 InvalidDataAccessApiUsageException(500)으로 바꾸므로 상속하지 않는다.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,53 @@
+package study.querydsl.repository.support;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.util.StringUtils;
+
+import java.util.Base64;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * 키셋(seek) 페이징 커서. 마지막으로 읽은 행의 정렬키와 id를 담는다.
+ * 클라이언트에는 base64url 문자열로만 노출해서 내부 구조에 의존하지 않게 한다.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public class KeysetCursor {
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final long sortKey;
+    private final long id;
+
+    public KeysetCursor(long sortKey, long id) {
+        this.sortKey = sortKey;
+        this.id = id;
+    }
+
+    /**
+     * @return 커서가 비어있으면 null (첫 페이지)
+     * @throws InvalidCursorException 이 클래스가 만든 커서가 아니면
+     */
+    public static KeysetCursor decode(String cursor) {
+        if (!StringUtils.hasText(cursor)) {
+            return null;
+        }
+        try {
+            String raw = new String(DECODER.decode(cursor), UTF_8);
+            int separator = raw.indexOf(':');
+            return new KeysetCursor(
+                    Long.parseLong(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    public String encode() {
+        return ENCODER.encodeToString((sortKey + ":" + id).getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,21 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 키셋 페이징 결과. 다음 페이지가 없으면 nextCursor는 null
+ */
+@Getter
+public class KeysetSlice<T> {
+    private final List<T> content;
+    private final String nextCursor;
+    private final boolean hasNext;
+
+    public KeysetSlice(List<T> content, KeysetCursor next) {
+        this.content = content;
+        this.nextCursor = next != null ? next.encode() : null;
+        this.hasNext = next != null;
+    }
+}
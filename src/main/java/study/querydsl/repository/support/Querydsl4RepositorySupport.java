@@ -2,6 +2,8 @@ package study.querydsl.repository.support;
 
 import com.querydsl.core.types.EntityPath;
 import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.core.types.dsl.NumberPath;
 import com.querydsl.core.types.dsl.PathBuilder;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
@@ -19,6 +21,7 @@ import org.springframework.util.Assert;
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 /**
  * Querydsl 4.x 버전에 맞춘 Querydsl 지원 라이브러리
@@ -33,6 +36,7 @@ public abstract class Querydsl4RepositorySupport {
     private Querydsl querydsl;
     private EntityManager entityManager;
     private JPAQueryFactory queryFactory;
+    private CountQueryExecutor countQueryExecutor;
     public Querydsl4RepositorySupport(Class<?> domainClass) {
         Assert.notNull(domainClass, "Domain class must not be null!");
         this.domainClass = domainClass;
@@ -49,11 +53,16 @@ public abstract class Querydsl4RepositorySupport {
                 PathBuilder<>(path.getType(), path.getMetadata()));
         this.queryFactory = new JPAQueryFactory(entityManager);
     }
+    @Autowired
+    public void setCountQueryExecutor(CountQueryExecutor countQueryExecutor) {
+        this.countQueryExecutor = countQueryExecutor;
+    }
     @PostConstruct
     public void validate() {
         Assert.notNull(entityManager, "EntityManager must not be null!");
         Assert.notNull(querydsl, "Querydsl must not be null!");
         Assert.notNull(queryFactory, "QueryFactory must not be null!");
+        Assert.notNull(countQueryExecutor, "CountQueryExecutor must not be null!");
     }
     protected JPAQueryFactory getQueryFactory() {
         return queryFactory;
@@ -70,13 +79,17 @@ public abstract class Querydsl4RepositorySupport {
     protected <T> JPAQuery<T> selectFrom(EntityPath<T> from) {
         return getQueryFactory().selectFrom(from);
     }
+    /**
+     * 카운트 쿼리는 CountQueryBuilder로 컨텐츠 쿼리에서 정렬, 프로젝션, 필요없는 left join을 뺀 최소 쿼리를 만들어 사용한다.
+     */
     protected <T> Page<T> applyPagination(Pageable pageable,
                                           Function<JPAQueryFactory, JPAQuery> contentQuery) {
         JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
+        JPAQuery<Long> countQuery = CountQueryBuilder.countOf(getEntityManager(), jpaQuery);
         List<T> content = getQuerydsl().applyPagination(pageable,
                 jpaQuery).fetch();
         return PageableExecutionUtils.getPage(content, pageable,
-                jpaQuery::fetchCount);
+                countQuery::fetchOne);
     }
     protected <T> Page<T> applyPagination(Pageable pageable,
                                           Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory,
@@ -84,8 +97,68 @@ public abstract class Querydsl4RepositorySupport {
         JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
         List<T> content = getQuerydsl().applyPagination(pageable,
                 jpaContentQuery).fetch();
-        JPAQuery countResult = countQuery.apply(getQueryFactory());
+        JPAQuery<Long> countResult = CountQueryBuilder.countOf(getEntityManager(), countQuery.apply(getQueryFactory()));
         return PageableExecutionUtils.getPage(content, pageable,
-                countResult::fetchCount);
+                countResult::fetchOne);
+    }
+    /**
+     * 카운트 쿼리를 별도 읽기 전용 EntityManager에서 컨텐츠 쿼리와 동시에 실행해서
+     * 페이지 지연시간을 두 쿼리의 합이 아닌 느린 쪽 하나로 줄인다.
+     * 카운트가 필요없는 경우(PageableExecutionUtils)에는 결과를 기다리지 않고 취소한다.
+     * 카운트가 늦어지면(커넥션 풀 고갈 등) 호출 스레드에서 직접 센다. (CountQueryExecutor.await)
+     */
+    protected <T> Page<T> applyPaginationConcurrently(Pageable pageable,
+                                                      Function<JPAQueryFactory, JPAQuery> contentQuery) {
+        JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
+        JPAQuery<Long> countQuery = CountQueryBuilder.countOf(getEntityManager(), jpaQuery);
+        CompletableFuture<Long> total = countQueryExecutor.submit(countQuery::fetchOne);
+        List<T> content = getQuerydsl().applyPagination(pageable,
+                jpaQuery).fetch();
+        Page<T> page = PageableExecutionUtils.getPage(content, pageable,
+                () -> countQueryExecutor.await(total, countQuery::fetchOne));
+        total.cancel(false); // 기다리지 않은 카운트가 아직 큐에 있으면 실행하지 않음
+        return page;
+    }
+    protected <T> Page<T> applyPaginationConcurrently(Pageable pageable,
+                                                      Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory,
+            JPAQuery> countQuery) {
+        JPAQuery<Long> countResult = CountQueryBuilder.countOf(getEntityManager(), countQuery.apply(getQueryFactory()));
+        CompletableFuture<Long> total = countQueryExecutor.submit(countResult::fetchOne);
+        JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
+        List<T> content = getQuerydsl().applyPagination(pageable,
+                jpaContentQuery).fetch();
+        Page<T> page = PageableExecutionUtils.getPage(content, pageable,
+                () -> countQueryExecutor.await(total, countResult::fetchOne));
+        total.cancel(false);
+        return page;
+    }
+    /**
+     * 키셋(seek) 페이징. offset 대신 (sortKey, id) > 커서 조건으로 다음 페이지를 찾으므로
+     * 인덱스만 타면 몇 번째 페이지든 첫 페이지와 같은 비용이 든다.
+     * 정렬은 sortKey asc, id asc 고정이고 다음 페이지 여부 확인을 위해 size + 1건을 조회한다.
+     */
+    protected <T> KeysetSlice<T> applyKeyset(String cursor, int size,
+                                             NumberExpression<?> sortKey, NumberPath<Long> id,
+                                             Function<T, ? extends Number> sortKeyOf, Function<T, Long> idOf,
+                                             Function<JPAQueryFactory, JPAQuery<T>> contentQuery) {
+        Assert.isTrue(size > 0, "Size must be greater than zero!");
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        JPAQuery<T> jpaQuery = contentQuery.apply(getQueryFactory());
+        if (after != null) {
+            //(sortKey, id) > (:sortKey, :id) 를 인덱스 범위 조건(sortKey >= :sortKey)이 앞에 오도록 풀어씀
+            jpaQuery.where(sortKey.goe(after.getSortKey())
+                    .and(sortKey.gt(after.getSortKey()).or(id.gt(after.getId()))));
+        }
+        List<T> content = jpaQuery
+                .orderBy(sortKey.asc(), id.asc())
+                .limit(size + 1)
+                .fetch();
+        if (content.size() <= size) {
+            return new KeysetSlice<>(content, null);
+        }
+        List<T> page = content.subList(0, size);
+        T last = page.get(size - 1);
+        return new KeysetSlice<>(page,
+                new KeysetCursor(sortKeyOf.apply(last).longValue(), idOf.apply(last)));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,44 @@
+package study.querydsl.seed;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * local 프로필 기동시 seed.* 설정대로 MemberSeeder로 데이터를 넣는다. (이전 initMember 대체)
+ * 처음 두 팀은 이전과 같이 teamA, teamB 이고 seed.teams를 늘리면 team2, team3, ... 이 추가된다.
+ * 기본 설정(teams: 2)에서는 짝수 회원이 teamA, 홀수 회원이 teamB 이므로 teamName=teamA 로 조회하던 요청은 그대로 동작한다.
+ */
+@Profile("local") // local 프로필일때만 동작함
+@Component
+public class LocalDataSeeder implements ApplicationRunner {
+
+    private final MemberSeeder memberSeeder;
+    private final int members;
+    private final int teams;
+    private final int threads;
+    private final int batchSize;
+    private final double skew;
+
+    public LocalDataSeeder(MemberSeeder memberSeeder,
+                           @Value("${seed.members:100}") int members,
+                           @Value("${seed.teams:2}") int teams,
+                           @Value("${seed.threads:4}") int threads,
+                           @Value("${seed.batch-size:1000}") int batchSize,
+                           @Value("${seed.skew:0}") double skew) {
+        this.memberSeeder = memberSeeder;
+        this.members = members;
+        this.teams = teams;
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.skew = skew;
+    }
+
+    //스키마 생성(ddl-auto)이 끝난 뒤 실행되도록 @PostConstruct 대신 ApplicationRunner 사용
+    @Override
+    public void run(ApplicationArguments args) {
+        memberSeeder.seed(members, teams, threads, batchSize, skew);
+    }
+}
@@ -0,0 +1,161 @@
+package study.querydsl.seed;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.EntityChangedEvent;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 대량 테스트 데이터 적재기
+ * 영속성 컨텍스트를 거치지 않고 JDBC 배치 insert로 넣으며 batchSize건마다 커밋한다.
+ * 회원 구간을 threads개로 나눠 동시에 적재하고, 팀 배정은 skew 지수의 Zipf 분포를 따른다. (skew <= 0 이면 순서대로 균등 배정)
+ * id는 시퀀스를 거치지 않고 직접 부여한 뒤 마지막에 시퀀스를 최대 id 이후로 맞춘다.
+ */
+@Slf4j
+@Component
+public class MemberSeeder {
+
+    static final String TEAM_SEQUENCE = "team_seq";
+    static final String MEMBER_SEQUENCE = "member_seq";
+    static final int ID_ALLOCATION_SIZE = 50; // Member, Team @SequenceGenerator의 allocationSize와 같아야함
+
+    private static final String[] NAMED_TEAMS = {"teamA", "teamB"}; // 이전 initMember의 팀 이름 유지
+
+    private static final String INSERT_TEAM = "insert into team (id, name) values (?, ?)";
+    private static final String INSERT_MEMBER = "insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher publisher;
+
+    public MemberSeeder(DataSource dataSource, ApplicationEventPublisher publisher) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.publisher = publisher;
+    }
+
+    public void seed(int members, int teams, int threads, int batchSize, double skew) {
+        Assert.isTrue(teams > 0, "Teams must be greater than zero!");
+        Assert.isTrue(threads > 0, "Threads must be greater than zero!");
+        Assert.isTrue(batchSize > 0, "Batch size must be greater than zero!");
+
+        long start = System.nanoTime();
+        long baseId = Math.max(
+                jdbcTemplate.queryForObject("select coalesce(max(id), 0) from team", Long.class),
+                jdbcTemplate.queryForObject("select coalesce(max(member_id), 0) from member", Long.class));
+        long[] teamIds = insertTeams(baseId, teams, batchSize);
+        long memberBaseId = teamIds[teams - 1];
+        insertMembers(memberBaseId, members, teamIds, threads, batchSize, skew);
+        restartSequence(TEAM_SEQUENCE, teamIds[teams - 1]);
+        restartSequence(MEMBER_SEQUENCE, memberBaseId + members);
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        log.info("seeded {} members, {} teams in {} ms ({} rows/s)",
+                members, teams, elapsedMillis, (members + teams) * 1000L / elapsedMillis);
+
+        //JDBC로 직접 넣었으므로 엔티티 이벤트가 없음
+        publisher.publishEvent(EntityChangedEvent.bulk(Team.class));
+        publisher.publishEvent(EntityChangedEvent.bulk(Member.class));
+    }
+
+    private long[] insertTeams(long baseId, int teams, int batchSize) {
+        long[] teamIds = new long[teams];
+        List<Object[]> rows = new ArrayList<>(Math.min(teams, batchSize));
+        for (int i = 0; i < teams; i++) {
+            teamIds[i] = baseId + i + 1;
+            rows.add(new Object[]{teamIds[i], teamName(i)});
+            if (rows.size() == batchSize || i == teams - 1) {
+                List<Object[]> batch = rows;
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_TEAM, batch));
+                rows = new ArrayList<>(Math.min(teams, batchSize));
+            }
+        }
+        return teamIds;
+    }
+
+    //처음 두 팀은 teamA, teamB, 그 이후 팀만 team2, team3, ... 으로 이름을 만듦
+    static String teamName(int index) {
+        return index < NAMED_TEAMS.length ? NAMED_TEAMS[index] : "team" + index;
+    }
+
+    private void insertMembers(long baseId, int members, long[] teamIds, int threads, int batchSize, double skew) {
+        double[] cumulative = skew > 0 ? zipf(teamIds.length, skew) : null;
+        int perThread = (members + threads - 1) / threads;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int from = t * perThread;
+                int to = Math.min(members, from + perThread);
+                long randomSeed = t;
+                futures.add(executor.submit(() ->
+                        insertMemberRange(baseId, from, to, teamIds, cumulative, batchSize, new SplittableRandom(randomSeed))));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Seeding interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Seeding failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void insertMemberRange(long baseId, int from, int to, long[] teamIds, double[] cumulative,
+                                   int batchSize, SplittableRandom random) {
+        List<Object[]> rows = new ArrayList<>(batchSize);
+        for (int i = from; i < to; i++) {
+            int teamIndex = cumulative != null ? sample(cumulative, random.nextDouble()) : i % teamIds.length;
+            rows.add(new Object[]{baseId + i + 1, "member" + i, i % 100, teamIds[teamIndex]});
+            if (rows.size() == batchSize || i == to - 1) {
+                List<Object[]> batch = rows;
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_MEMBER, batch));
+                rows = new ArrayList<>(batchSize);
+            }
+        }
+    }
+
+    //pooled 최적화는 시퀀스 값을 할당 구간의 끝으로 보므로(값 - allocationSize + 1 부터 사용) allocationSize만큼 더해서 맞춤
+    private void restartSequence(String sequence, long maxId) {
+        jdbcTemplate.execute("alter sequence " + sequence + " restart with " + (maxId + ID_ALLOCATION_SIZE));
+    }
+
+    //k번째 팀이 뽑힐 확률이 1/k^skew 에 비례하는 누적분포
+    private static double[] zipf(int teams, double skew) {
+        double[] cumulative = new double[teams];
+        double sum = 0;
+        for (int k = 0; k < teams; k++) {
+            sum += 1 / Math.pow(k + 1, skew);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < teams; k++) {
+            cumulative[k] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int sample(double[] cumulative, double value) {
+        int index = Arrays.binarySearch(cumulative, value);
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+}
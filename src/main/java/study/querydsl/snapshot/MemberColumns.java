@@ -0,0 +1,369 @@
+package study.querydsl.snapshot;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * 회원 컬럼 저장소. 회원 한 명이 객체 하나가 아니라 컬럼별 기본형 배열의 같은 위치에 저장된다.
+ * - ids: 회원 id 오름차순 (이진 탐색으로 위치를 찾음)
+ * - ages, teamIds: 나이, 팀 id (팀이 없으면 NO_TEAM)
+ * - usernameCodes: 회원명 사전(usernames)의 번호 (회원명이 없으면 -1)
+ * 회원명 사전은 번호별로 쓰는 회원 수를 세서 아무도 안쓰는 회원명은 바로 지우고 번호는 다음 회원명에 재사용한다.
+ * 삭제는 removed 표시만 하고, 삭제된 행이 전체의 1/4을 넘으면 살아있는 행만 앞으로 당겨서 정리한다.
+ * 동기화하지 않으므로 MemberSnapshot이 읽기/쓰기 락을 잡고 사용한다.
+ */
+class MemberColumns {
+
+    static final long NO_TEAM = Long.MIN_VALUE;
+    private static final int NO_USERNAME = -1;
+    private static final int ANY_USERNAME = -2; // 필터에 회원명 일치 조건이 없음
+    private static final int MIN_COMPACT = 1024; // 삭제된 행이 이보다 적으면 정리하지 않음
+    private static final int MIN_CHUNK = 1 << 16; // 이보다 작게 나누면 스레드 비용이 더 큼
+
+    private long[] ids;
+    private int[] ages;
+    private long[] teamIds;
+    private int[] usernameCodes;
+    private boolean[] removed;
+    private int size;
+    private int removedCount;
+
+    private final List<String> usernames = new ArrayList<>(); // 지워진 번호는 null
+    private int[] usernameRefs = new int[16]; // 번호별 그 회원명을 쓰는 (삭제되지 않은) 회원 수
+    private final Deque<Integer> freeCodes = new ArrayDeque<>();
+    private final Map<String, Integer> usernameToCode = new HashMap<>();
+    private final Map<Long, String> teamNames = new HashMap<>();
+
+    MemberColumns(int capacity) {
+        capacity = Math.max(capacity, 16);
+        ids = new long[capacity];
+        ages = new int[capacity];
+        teamIds = new long[capacity];
+        usernameCodes = new int[capacity];
+        removed = new boolean[capacity];
+    }
+
+    //id 오름차순으로 넣으면 뒤에 붙이기만 함 (다시 만들때)
+    void upsert(long id, String username, int age, Long teamId) {
+        int pos = size > 0 && ids[size - 1] < id ? -(size + 1) : Arrays.binarySearch(ids, 0, size, id);
+        if (pos < 0) {
+            pos = -(pos + 1);
+            insertAt(pos);
+            ids[pos] = id;
+            usernameCodes[pos] = NO_USERNAME;
+        } else if (removed[pos]) {
+            removed[pos] = false;
+            removedCount--;
+        }
+        ages[pos] = age;
+        teamIds[pos] = teamId != null ? teamId : NO_TEAM;
+        int oldCode = usernameCodes[pos];
+        usernameCodes[pos] = acquire(username); // 같은 회원명이면 번호가 지워지지 않도록 먼저 잡고 놓음
+        release(oldCode);
+    }
+
+    void remove(long id) {
+        int pos = Arrays.binarySearch(ids, 0, size, id);
+        if (pos < 0 || removed[pos]) {
+            return;
+        }
+        removed[pos] = true;
+        release(usernameCodes[pos]);
+        usernameCodes[pos] = NO_USERNAME;
+        removedCount++;
+        if (removedCount >= MIN_COMPACT && removedCount > size / 4) {
+            compact();
+        }
+    }
+
+    void putTeam(long teamId, String name) {
+        teamNames.put(teamId, name);
+    }
+
+    void removeTeam(long teamId) {
+        teamNames.remove(teamId);
+    }
+
+    /**
+     * 조건에 맞는 회원을 id 순서로 offset부터 limit명 조회하고 전체 건수를 센다.
+     * 구간별 건수를 병렬로 센 뒤 offset이 속한 구간부터 순서대로 모은다.
+     */
+    Result page(MemberSearchCondition condition, long offset, int limit) {
+        Filter filter = filterOf(condition);
+        if (filter == null) {
+            return new Result(new ArrayList<>(), 0);
+        }
+        int chunks = chunks();
+        int[] counts = countByChunk(filter, chunks);
+        long total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+
+        List<MemberTeamDto> content = new ArrayList<>((int) Math.max(0, Math.min(limit, total - offset)));
+        long skip = offset;
+        for (int chunk = 0; chunk < chunks && content.size() < limit; chunk++) {
+            if (skip >= counts[chunk]) {
+                skip -= counts[chunk];
+                continue;
+            }
+            for (int i = from(chunk, chunks), to = from(chunk + 1, chunks); i < to && content.size() < limit; i++) {
+                if (filter.matches(this, i) && skip-- <= 0) {
+                    content.add(toDto(i));
+                }
+            }
+        }
+        return new Result(content, total);
+    }
+
+    //조건에 맞는 회원 id 전체 (id 순서), 구간마다 결과 배열의 자기 자리에 병렬로 채움
+    long[] ids(MemberSearchCondition condition) {
+        Filter filter = filterOf(condition);
+        if (filter == null) {
+            return new long[0];
+        }
+        int chunks = chunks();
+        int[] counts = countByChunk(filter, chunks);
+        int[] starts = new int[chunks + 1];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            starts[chunk + 1] = starts[chunk] + counts[chunk];
+        }
+        long[] result = new long[starts[chunks]];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int next = starts[chunk];
+            for (int i = from(chunk, chunks), to = from(chunk + 1, chunks); i < to; i++) {
+                if (filter.matches(this, i)) {
+                    result[next++] = ids[i];
+                }
+            }
+        });
+        return result;
+    }
+
+    int size() {
+        return size;
+    }
+
+    //사전에 남아있는 회원명 수
+    int usernameCount() {
+        return usernameToCode.size();
+    }
+
+    private int[] countByChunk(Filter filter, int chunks) {
+        int[] counts = new int[chunks];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int count = 0;
+            for (int i = from(chunk, chunks), to = from(chunk + 1, chunks); i < to; i++) {
+                if (filter.matches(this, i)) {
+                    count++;
+                }
+            }
+            counts[chunk] = count;
+        });
+        return counts;
+    }
+
+    private int chunks() {
+        int parallelism = Runtime.getRuntime().availableProcessors() * 4;
+        return Math.max(1, Math.min(parallelism, size / MIN_CHUNK));
+    }
+
+    private int from(int chunk, int chunks) {
+        return (int) ((long) size * chunk / chunks);
+    }
+
+    private MemberTeamDto toDto(int i) {
+        int code = usernameCodes[i];
+        long teamId = teamIds[i];
+        return new MemberTeamDto(ids[i],
+                code != NO_USERNAME ? usernames.get(code) : null,
+                ages[i],
+                teamId != NO_TEAM ? teamId : null,
+                teamId != NO_TEAM ? teamNames.get(teamId) : null);
+    }
+
+    private int acquire(String username) {
+        if (username == null) {
+            return NO_USERNAME;
+        }
+        Integer code = usernameToCode.get(username);
+        if (code == null) {
+            code = freeCodes.isEmpty() ? usernames.size() : freeCodes.pop();
+            if (code == usernames.size()) {
+                usernames.add(username);
+            } else {
+                usernames.set(code, username);
+            }
+            usernameToCode.put(username, code);
+            if (code == usernameRefs.length) {
+                usernameRefs = Arrays.copyOf(usernameRefs, code + (code >> 1));
+            }
+        }
+        usernameRefs[code]++;
+        return code;
+    }
+
+    //아무도 안쓰는 회원명은 사전에서 지우고 번호를 재사용
+    private void release(int code) {
+        if (code == NO_USERNAME || --usernameRefs[code] > 0) {
+            return;
+        }
+        usernameToCode.remove(usernames.get(code));
+        usernames.set(code, null);
+        freeCodes.push(code);
+    }
+
+    //삭제된 행을 빼고 살아있는 행만 앞으로 당김 (id 순서는 그대로)
+    private void compact() {
+        int live = 0;
+        for (int i = 0; i < size; i++) {
+            if (removed[i]) {
+                continue;
+            }
+            ids[live] = ids[i];
+            ages[live] = ages[i];
+            teamIds[live] = teamIds[i];
+            usernameCodes[live] = usernameCodes[i];
+            removed[live] = false;
+            live++;
+        }
+        Arrays.fill(removed, live, size, false);
+        size = live;
+        removedCount = 0;
+    }
+
+    private void insertAt(int pos) {
+        if (size == ids.length) {
+            int capacity = size + (size >> 1);
+            ids = Arrays.copyOf(ids, capacity);
+            ages = Arrays.copyOf(ages, capacity);
+            teamIds = Arrays.copyOf(teamIds, capacity);
+            usernameCodes = Arrays.copyOf(usernameCodes, capacity);
+            removed = Arrays.copyOf(removed, capacity);
+        }
+        if (pos < size) {
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            System.arraycopy(ages, pos, ages, pos + 1, size - pos);
+            System.arraycopy(teamIds, pos, teamIds, pos + 1, size - pos);
+            System.arraycopy(usernameCodes, pos, usernameCodes, pos + 1, size - pos);
+            System.arraycopy(removed, pos, removed, pos + 1, size - pos);
+        }
+        size++;
+    }
+
+    /**
+     * 검색 조건을 행마다 기본형 비교만 하도록 미리 풀어둔 필터
+     * 회원명 일치 조건은 사전에서 번호 하나로 바로 찾고, 부분/접두어 조건만 사전을 훑어서 번호별 일치 여부로 바꾼다.
+     * 팀 이름 조건은 그 이름을 가진 팀 id 목록으로 바꾼다. 맞는 회원이 있을 수 없으면 null
+     */
+    private Filter filterOf(MemberSearchCondition condition) {
+        int usernameCode = ANY_USERNAME;
+        boolean[] usernameMatches = null;
+        if (hasText(condition.getUsername())) {
+            Integer code = usernameToCode.get(condition.getUsername());
+            if (code == null || !matchesUsernamePattern(condition, condition.getUsername())) {
+                return null;
+            }
+            usernameCode = code;
+        } else if (hasText(condition.getUsernameContains()) || hasText(condition.getUsernameStartsWith())) {
+            usernameMatches = new boolean[usernames.size()];
+            boolean any = false;
+            for (int code = 0; code < usernames.size(); code++) {
+                String username = usernames.get(code);
+                usernameMatches[code] = username != null && matchesUsernamePattern(condition, username);
+                any |= usernameMatches[code];
+            }
+            if (!any) {
+                return null;
+            }
+        }
+
+        long[] teams = null;
+        if (hasText(condition.getTeamName())) {
+            teams = teamNames.entrySet().stream()
+                    .filter(team -> condition.getTeamName().equals(team.getValue()))
+                    .mapToLong(Map.Entry::getKey)
+                    .toArray();
+            if (teams.length == 0) {
+                return null;
+            }
+        }
+
+        int ageGoe = condition.getAgeGoe() != null ? condition.getAgeGoe() : Integer.MIN_VALUE;
+        int ageLoe = condition.getAgeLoe() != null ? condition.getAgeLoe() : Integer.MAX_VALUE;
+        return ageGoe > ageLoe ? null : new Filter(ageGoe, ageLoe, teams, usernameCode, usernameMatches);
+    }
+
+    private static boolean matchesUsernamePattern(MemberSearchCondition condition, String username) {
+        return (!hasText(condition.getUsernameContains()) || username.contains(condition.getUsernameContains()))
+                && (!hasText(condition.getUsernameStartsWith()) || username.startsWith(condition.getUsernameStartsWith()));
+    }
+
+    private static final class Filter {
+        private final int ageGoe;
+        private final int ageLoe;
+        private final long[] teamIds; // null이면 팀 조건 없음
+        private final int usernameCode; // ANY_USERNAME이면 회원명 일치 조건 없음
+        private final boolean[] usernameMatches; // null이면 회원명 부분/접두어 조건 없음
+
+        private Filter(int ageGoe, int ageLoe, long[] teamIds, int usernameCode, boolean[] usernameMatches) {
+            this.ageGoe = ageGoe;
+            this.ageLoe = ageLoe;
+            this.teamIds = teamIds;
+            this.usernameCode = usernameCode;
+            this.usernameMatches = usernameMatches;
+        }
+
+        private boolean matches(MemberColumns columns, int i) {
+            if (columns.removed[i]) {
+                return false;
+            }
+            int age = columns.ages[i];
+            if (age < ageGoe || age > ageLoe) {
+                return false;
+            }
+            if (teamIds != null && !containsTeam(columns.teamIds[i])) {
+                return false;
+            }
+            if (usernameCode != ANY_USERNAME) {
+                return columns.usernameCodes[i] == usernameCode;
+            }
+            if (usernameMatches != null) {
+                int code = columns.usernameCodes[i];
+                return code != NO_USERNAME && code < usernameMatches.length && usernameMatches[code];
+            }
+            return true;
+        }
+
+        //같은 이름의 팀은 보통 하나뿐이므로 선형 탐색
+        private boolean containsTeam(long teamId) {
+            for (long id : teamIds) {
+                if (id == teamId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static final class Result {
+        final List<MemberTeamDto> content;
+        final long total;
+
+        Result(List<MemberTeamDto> content, long total) {
+            this.content = content;
+            this.total = total;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package study.querydsl.snapshot;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.EntityChangedEvent;
+import study.querydsl.event.TransactionChanges;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnitUtil;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 회원 검색용 메모리 컬럼 스냅샷 (member.snapshot.enabled=true 일때만 등록)
+ * 나이 범위, 팀, 회원명 조건을 하이버네이트/JDBC 없이 MemberColumns의 기본형 배열 병렬 스캔으로 처리한다.
+ * - 기동시와 벌크 연산 후에 별도 스레드에서 DB 전체를 읽어 다시 만든다. 만드는 동안 커밋된 변경은 모아뒀다가 이어서 반영
+ * - 회원/팀 insert, update, delete는 커밋 후에 증분 반영한다. (롤백된 변경은 반영되지 않음)
+ * 스냅샷이 아직 없거나(만드는 중), 현재 트랜잭션에 커밋되지 않은 회원/팀 변경이 있으면 null을 돌려주고 호출한 쪽이 DB에서 조회한다.
+ * 결과는 회원 id 순서이고 Pageable의 정렬은 무시한다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "member.snapshot.enabled", havingValue = "true")
+public class MemberSnapshot implements DisposableBean {
+
+    private final JPAQueryFactory queryFactory;
+    private final EntityManager em;
+    private final PersistenceUnitUtil persistenceUnitUtil;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService rebuildExecutor =
+            Executors.newSingleThreadExecutor(new CustomizableThreadFactory("member-snapshot-"));
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private MemberColumns columns; // null이면 stale
+    private boolean rebuilding;
+    private boolean rebuildAgain; // 만드는 도중 벌크 변경이 커밋됨
+    private long generation; // 나중에 시작한 재생성만 결과를 반영
+    private final List<EntityChangedEvent> pending = new ArrayList<>(); // 만드는 도중 커밋된 변경
+
+    public MemberSnapshot(JPAQueryFactory queryFactory, EntityManager em, EntityManagerFactory entityManagerFactory,
+                          PlatformTransactionManager transactionManager) {
+        this.queryFactory = queryFactory;
+        this.em = em;
+        this.persistenceUnitUtil = entityManagerFactory.getPersistenceUnitUtil();
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    //스냅샷을 쓸 수 없으면 null
+    public Page<MemberTeamDto> searchPage(MemberSearchCondition condition, Pageable pageable) {
+        if (!prepareRead()) {
+            return null;
+        }
+        try {
+            long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+            int limit = pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+            MemberColumns.Result result = columns.page(condition, offset, limit);
+            return new PageImpl<>(result.content, pageable, result.total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //조건에 맞는 회원 id (id 순서), 스냅샷을 쓸 수 없으면 null
+    public long[] searchIds(MemberSearchCondition condition) {
+        if (!prepareRead()) {
+            return null;
+        }
+        try {
+            return columns.ids(condition);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        lock.readLock().lock();
+        try {
+            return columns != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //DB에서 바로 다시 만듦 (호출한 스레드에서 실행)
+    public void refresh() {
+        long current;
+        lock.writeLock().lock();
+        try {
+            columns = null;
+            rebuilding = true;
+            pending.clear();
+            current = ++generation;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        rebuild(current);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        requestRebuild();
+    }
+
+    //flush된 회원/팀 변경이 있는 트랜잭션은 커밋 전까지 스냅샷 대신 DB를 읽도록 표시
+    @EventListener
+    public void onFlushed(EntityChangedEvent event) {
+        if (isRelevant(event)) {
+            TransactionChanges.markChanged(this);
+        }
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommitted(EntityChangedEvent event) {
+        if (!isRelevant(event)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (event.isBulk()) {
+                columns = null;
+                if (rebuilding) {
+                    rebuildAgain = true;
+                }
+            } else if (columns != null) {
+                apply(columns, event);
+            } else if (rebuilding) {
+                pending.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (event.isBulk()) {
+            requestRebuild();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * 스냅샷을 읽을 수 있으면 읽기 락을 잡고 true
+     * 아직 flush되지 않은 변경이 있을 수 있으므로 먼저 flush해서 onFlushed로 표시되게 한다.
+     */
+    private boolean prepareRead() {
+        if (em.isJoinedToTransaction()) {
+            em.flush();
+        }
+        if (TransactionChanges.isChanged(this)) {
+            return false;
+        }
+        lock.readLock().lock();
+        if (columns != null) {
+            return true;
+        }
+        lock.readLock().unlock();
+        requestRebuild();
+        return false;
+    }
+
+    private void requestRebuild() {
+        long current;
+        lock.writeLock().lock();
+        try {
+            if (rebuilding || columns != null) {
+                return;
+            }
+            rebuilding = true;
+            pending.clear();
+            current = ++generation;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        rebuildExecutor.execute(() -> rebuild(current));
+    }
+
+    private void rebuild(long current) {
+        MemberColumns loaded;
+        try {
+            loaded = readOnlyTransaction.execute(status -> load());
+        } catch (RuntimeException e) {
+            log.warn("member snapshot rebuild failed", e);
+            lock.writeLock().lock();
+            try {
+                if (current == generation) {
+                    rebuilding = false; // 다음 조회때 다시 시도
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (current != generation) {
+                return; // refresh 등으로 나중에 시작한 재생성이 반영함
+            }
+            if (rebuildAgain) {
+                rebuildAgain = false;
+                pending.clear();
+                long next = ++generation;
+                rebuildExecutor.execute(() -> rebuild(next));
+                return;
+            }
+            for (EntityChangedEvent event : pending) {
+                apply(loaded, event); // 이미 읽은 변경을 다시 반영해도 결과는 같음
+            }
+            pending.clear();
+            columns = loaded;
+            rebuilding = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("member snapshot rebuilt: {} members", loaded.size());
+    }
+
+    private MemberColumns load() {
+        Long count = queryFactory.select(member.count()).from(member).fetchOne();
+        MemberColumns loaded = new MemberColumns(count != null ? Math.toIntExact(count) : 0);
+        for (Tuple row : queryFactory.select(team.id, team.name).from(team).fetch()) {
+            loaded.putTeam(row.get(team.id), row.get(team.name));
+        }
+        //id 순서로 읽으면 배열 뒤에 붙이기만 하고, 영속성 컨텍스트에 쌓이지 않도록 스트림으로 읽음
+        try (Stream<Tuple> rows = queryFactory
+                .select(member.id, member.username, member.age, member.team.id)
+                .from(member)
+                .orderBy(member.id.asc())
+                .stream()) {
+            for (Iterator<Tuple> it = rows.iterator(); it.hasNext(); ) {
+                Tuple row = it.next();
+                loaded.upsert(row.get(member.id), row.get(member.username), row.get(member.age), row.get(member.team.id));
+            }
+        }
+        return loaded;
+    }
+
+    private void apply(MemberColumns target, EntityChangedEvent event) {
+        Long id = (Long) persistenceUnitUtil.getIdentifier(event.getEntity());
+        if (event.isAbout(Team.class)) {
+            if (event.getType() == EntityChangedEvent.ChangeType.REMOVE) {
+                target.removeTeam(id);
+            } else {
+                target.putTeam(id, (String) event.get("name"));
+            }
+        } else if (event.getType() == EntityChangedEvent.ChangeType.REMOVE) {
+            target.remove(id);
+        } else {
+            Object memberTeam = event.get("team");
+            target.upsert(id, (String) event.get("username"), (Integer) event.get("age"),
+                    memberTeam != null ? (Long) persistenceUnitUtil.getIdentifier(memberTeam) : null);
+        }
+    }
+
+    private static boolean isRelevant(EntityChangedEvent event) {
+        return event.isAbout(Member.class) || event.isAbout(Team.class);
+    }
+}
@@ -0,0 +1,241 @@
+package study.querydsl.statistics;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import study.querydsl.dto.TeamStatisticsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.EntityChangedEvent;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnitUtil;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 팀별 회원 수, 평균/최소/최대 나이 (QuerydslBasicTest.group 의 GROUP BY를 매번 하지 않기 위한 읽기 모델)
+ * 회원/팀 insert, update, delete 이벤트로 커밋 후에 증분 갱신하므로 조회는 O(팀 수)다.
+ * 최소/최대 나이는 삭제시 되돌릴 수 있도록 팀별 나이 히스토그램으로 관리한다.
+ * 벌크 연산처럼 어떤 행이 바뀌었는지 알 수 없으면 stale로 표시하고 다음 조회때 DB에서 다시 집계한다.
+ * 팀이 없는 회원은 집계하지 않는다.
+ * <p>
+ * 커밋은 커밋 후 리스너보다 먼저 DB에 보이므로, 그 사이에 다시 집계하면 같은 변경이 두번 반영될 수 있다.
+ * 그래서 변경이 flush된 시점을 기록해두고, 집계가 끝나기 전에 flush된 변경이 커밋 후에 도착하면
+ * 집계에 이미 포함됐는지 알 수 없으므로 stale로 표시한다. (집계 도중 도착한 변경도 마찬가지)
+ * GROUP BY는 락 밖에서 실행하므로 집계하는 동안 다른 트랜잭션의 커밋 후 처리가 기다리지 않는다.
+ */
+@Slf4j
+@Component
+public class TeamStatistics {
+
+    private final JPAQueryFactory queryFactory;
+    private final PersistenceUnitUtil persistenceUnitUtil;
+
+    private Map<Long, TeamStats> teams = new HashMap<>();
+    private boolean stale = true; // 처음 조회때 집계
+    private boolean rebuilding;
+    private long rebuiltAt; // 마지막 집계 쿼리가 끝난 순번
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<EntityChangedEvent, Long> flushedAt = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Object rebuildLock = new Object(); // 한번에 한 스레드만 집계
+
+    public TeamStatistics(JPAQueryFactory queryFactory, EntityManagerFactory entityManagerFactory) {
+        this.queryFactory = queryFactory;
+        this.persistenceUnitUtil = entityManagerFactory.getPersistenceUnitUtil();
+    }
+
+    public List<TeamStatisticsDto> findAll() {
+        synchronized (this) {
+            if (!stale && !rebuilding) {
+                return toDtos();
+            }
+        }
+        synchronized (rebuildLock) {
+            synchronized (this) {
+                if (!stale) {
+                    return toDtos(); // 기다리는 동안 다른 스레드가 집계함
+                }
+                stale = false; // 집계 도중 도착한 변경이 다시 stale로 표시할 수 있도록 먼저 내림
+                rebuilding = true;
+            }
+            Map<Long, TeamStats> rebuilt;
+            try {
+                rebuilt = aggregate();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    stale = true;
+                    rebuilding = false;
+                }
+                throw e;
+            }
+            long finishedAt = sequence.incrementAndGet();
+            synchronized (this) {
+                teams = rebuilt;
+                rebuiltAt = finishedAt;
+                rebuilding = false;
+                return toDtos(); // 집계 도중 stale로 표시됐어도 이번 결과는 집계 시점의 DB와 같음
+            }
+        }
+    }
+
+    public synchronized void markStale() {
+        stale = true;
+    }
+
+    //변경이 flush된 순번을 기록 (커밋 후 처리에서 집계보다 먼저 flush됐는지 확인)
+    @EventListener
+    public void onFlushed(EntityChangedEvent event) {
+        if (isRelevant(event) && !event.isBulk()) {
+            flushedAt.put(event, sequence.incrementAndGet());
+        }
+    }
+
+    //롤백된 변경이 반영되지 않도록 커밋 후 처리, 트랜잭션 밖에서 발행된 이벤트(벌크 등)는 바로 처리
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void on(EntityChangedEvent event) {
+        if (!isRelevant(event)) {
+            return;
+        }
+        Long flushed = flushedAt.remove(event);
+        if (stale) {
+            return; // 어차피 다시 집계함
+        }
+        if (rebuilding || flushed == null || flushed < rebuiltAt) {
+            stale = true; // 집계에 이미 포함됐을 수 있음
+            return;
+        }
+        if (event.isBulk() || (event.getType() == EntityChangedEvent.ChangeType.UPDATE && event.getOldState() == null)) {
+            stale = true;
+            return;
+        }
+        if (event.isAbout(Team.class)) {
+            onTeamChanged(event);
+        } else {
+            onMemberChanged(event);
+        }
+    }
+
+    private List<TeamStatisticsDto> toDtos() {
+        List<TeamStatisticsDto> result = new ArrayList<>(teams.size());
+        teams.forEach((teamId, stats) -> result.add(stats.toDto(teamId)));
+        result.sort((a, b) -> a.getTeamId().compareTo(b.getTeamId()));
+        return result;
+    }
+
+    private void onTeamChanged(EntityChangedEvent event) {
+        Long teamId = (Long) persistenceUnitUtil.getIdentifier(event.getEntity());
+        switch (event.getType()) {
+            case PERSIST:
+            case UPDATE:
+                teams.computeIfAbsent(teamId, id -> new TeamStats()).name = (String) event.get("name");
+                break;
+            case REMOVE:
+                teams.remove(teamId);
+                break;
+        }
+    }
+
+    private void onMemberChanged(EntityChangedEvent event) {
+        if (event.getOldState() != null) {
+            remove(teamIdOf(event.getOld("team")), (Integer) event.getOld("age"));
+        }
+        if (event.getState() != null) {
+            add(teamIdOf(event.get("team")), (Integer) event.get("age"));
+        }
+    }
+
+    private void add(Long teamId, int age) {
+        if (teamId != null) {
+            teams.computeIfAbsent(teamId, id -> new TeamStats()).add(age);
+        }
+    }
+
+    private void remove(Long teamId, int age) {
+        TeamStats stats = teamId != null ? teams.get(teamId) : null;
+        if (stats != null) {
+            stats.remove(age);
+        }
+    }
+
+    private Long teamIdOf(Object team) {
+        return team != null ? (Long) persistenceUnitUtil.getIdentifier(team) : null;
+    }
+
+    private static boolean isRelevant(EntityChangedEvent event) {
+        return event.isAbout(Member.class) || event.isAbout(Team.class);
+    }
+
+    //팀별, 나이별 회원 수를 한번에 집계해서 히스토그램을 다시 만듦
+    private Map<Long, TeamStats> aggregate() {
+        List<Tuple> rows = queryFactory
+                .select(team.id, team.name, member.age, member.count())
+                .from(team)
+                .leftJoin(team.members, member)
+                .groupBy(team.id, team.name, member.age)
+                .fetch();
+
+        Map<Long, TeamStats> rebuilt = new HashMap<>();
+        for (Tuple row : rows) {
+            TeamStats stats = rebuilt.computeIfAbsent(row.get(team.id), id -> new TeamStats());
+            stats.name = row.get(team.name);
+            Integer age = row.get(member.age);
+            Long count = row.get(member.count());
+            if (age != null && count != null && count > 0) {
+                stats.add(age, count);
+            }
+        }
+        log.debug("team statistics rebuilt: {} teams", rebuilt.size());
+        return rebuilt;
+    }
+
+    private static class TeamStats {
+        private String name;
+        private long count;
+        private long ageSum;
+        private final TreeMap<Integer, Long> ages = new TreeMap<>();
+
+        void add(int age) {
+            add(age, 1);
+        }
+
+        void add(int age, long members) {
+            ages.merge(age, members, Long::sum);
+            count += members;
+            ageSum += age * members;
+        }
+
+        void remove(int age) {
+            Long members = ages.get(age);
+            if (members == null) {
+                return; // 집계 이후 생성됐지만 이벤트를 못받은 회원 등
+            }
+            if (members == 1) {
+                ages.remove(age);
+            } else {
+                ages.put(age, members - 1);
+            }
+            count--;
+            ageSum -= age;
+        }
+
+        TeamStatisticsDto toDto(Long teamId) {
+            return count == 0
+                    ? new TeamStatisticsDto(teamId, name, 0, null, null, null)
+                    : new TeamStatisticsDto(teamId, name, count, (double) ageSum / count, ages.firstKey(), ages.lastKey());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package study.querydsl.web;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.WebRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumnsDto;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.event.DataVersion;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 회원 검색 응답 캐시
+ * 직렬화된 응답 바이트를 (데이터 버전, 엔드포인트, 응답 형식, 정규화된 검색 조건, 페이지) 로 캐시하고 데이터 버전을 ETag로 내려준다.
+ * 응답 형식은 Accept 헤더로 고른다. (MemberResponseFormat)
+ * If-None-Match가 현재 버전과 같으면 조회/직렬화 없이 304를 반환한다.
+ * 데이터가 바뀌면 버전이 올라가므로 이전 버전의 항목은 다시 조회되지 않고, 메모리는 크기 제한으로 정리된다.
+ */
+@Component
+public class MemberResponseCache {
+
+    private final DataVersion dataVersion;
+    private final ObjectMapper objectMapper;
+    private final CBORMapper cborMapper = new CBORMapper();
+    private final Cache<Key, byte[]> cache;
+
+    public MemberResponseCache(DataVersion dataVersion, ObjectMapper objectMapper,
+                               @Value("${member.response-cache.maximum-size:64MB}") DataSize maximumSize) {
+        this.dataVersion = dataVersion;
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumSize.toBytes())
+                .weigher((Key key, byte[] body) -> body.length)
+                .build();
+    }
+
+    /**
+     * @param pageable 페이징하지 않는 엔드포인트는 null
+     * @param body     캐시에 없을 때만 호출됨
+     */
+    public ResponseEntity<byte[]> respond(WebRequest request, String endpoint,
+                                          MemberSearchCondition condition, Pageable pageable, Supplier<?> body) {
+        MemberResponseFormat format = MemberResponseFormat.negotiate(request.getHeader(HttpHeaders.ACCEPT));
+
+        //조회 전에 버전을 읽어야 조회 도중 바뀐 데이터가 새 버전으로 캐시되지 않음
+        long version = dataVersion.current();
+        String etag = "\"" + version + "-" + format.name().toLowerCase() + "\""; // 형식별로 표현이 다르므로 ETag도 다름
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT).build();
+        }
+
+        byte[] bytes = cache.get(new Key(version, endpoint, format, condition.normalized(), pageable),
+                key -> serialize(format, body.get()));
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .eTag(etag)
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(bytes);
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] serialize(MemberResponseFormat format, Object body) {
+        Object value = body;
+        if (format.isColumnar()) {
+            value = body instanceof Slice
+                    ? MemberTeamColumnsDto.of((Slice<MemberTeamDto>) body)
+                    : MemberTeamColumnsDto.of((List<MemberTeamDto>) body);
+        }
+        try {
+            return format == MemberResponseFormat.CBOR
+                    ? cborMapper.writeValueAsBytes(value)
+                    : objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class Key {
+        private final long version;
+        private final String endpoint;
+        private final MemberResponseFormat format;
+        private final MemberSearchCondition condition;
+        private final Pageable pageable;
+    }
+}
@@ -0,0 +1,58 @@
+package study.querydsl.web;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+
+/**
+ * 회원 검색 응답 형식. Accept 헤더로 선택하고 지원하지 않는 형식이면 JSON
+ * - JSON: 기존 형식 (행마다 필드 이름, Page는 PageImpl 그대로)
+ * - COLUMNAR_JSON: MemberTeamColumnsDto를 JSON으로
+ * - CBOR: MemberTeamColumnsDto를 CBOR(바이너리)로
+ */
+public enum MemberResponseFormat {
+    JSON(MediaType.APPLICATION_JSON),
+    COLUMNAR_JSON(MediaType.valueOf("application/vnd.querydsl.member-columns+json")),
+    CBOR(MediaType.APPLICATION_CBOR);
+
+    private final MediaType mediaType;
+
+    MemberResponseFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public boolean isColumnar() {
+        return this != JSON;
+    }
+
+    public static MemberResponseFormat negotiate(String accept) {
+        if (!StringUtils.hasText(accept)) {
+            return JSON;
+        }
+        List<MediaType> acceptable;
+        try {
+            acceptable = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return JSON;
+        }
+        MediaType.sortBySpecificityAndQuality(acceptable);
+        for (MediaType type : acceptable) {
+            //*/* 나 application/* 는 기존 JSON으로 응답
+            if (type.isWildcardType() || type.isWildcardSubtype()) {
+                return JSON;
+            }
+            for (MemberResponseFormat format : values()) {
+                if (format.mediaType.isCompatibleWith(type)) {
+                    return format;
+                }
+            }
+        }
+        return JSON;
+    }
+}
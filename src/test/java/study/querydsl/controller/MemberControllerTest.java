@@ -0,0 +1,161 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.StatementBudget;
+
+import javax.persistence.EntityManager;
+
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+class MemberControllerTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    @StatementBudget(2) // 컨텐츠 + 카운트
+    public void searchMemberV3() throws Exception {
+        mockMvc.perform(get("/v3/members").param("page", "0").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements").value(4));
+    }
+
+    @Test
+    @StatementBudget(2) // 두번째 요청은 304로 SQL 없이 응답
+    public void searchMemberV3NotModified() throws Exception {
+        String etag = mockMvc.perform(get("/v3/members").param("page", "0").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/v3/members").param("page", "0").param("size", "2")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void searchMemberV3ChangedAfterETag() throws Exception {
+        String etag = mockMvc.perform(get("/v3/members").param("page", "0").param("size", "2"))
+                .andExpect(jsonPath("$.totalElements").value(4))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //회원이 추가되면 데이터 버전이 바뀌므로 캐시된 응답과 ETag를 쓰지 않음
+        Team teamA = em.createQuery("select t from Team t where t.name = 'teamA'", Team.class).getSingleResult();
+        em.persist(new Member("member5", 50, teamA));
+        em.flush();
+
+        mockMvc.perform(get("/v3/members").param("page", "0").param("size", "2")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)))
+                .andExpect(jsonPath("$.totalElements").value(5));
+    }
+
+    @Test
+    public void searchMemberV3DeferredJoinSameAsOffset() throws Exception {
+        //offset 페이징과 지연 조인 페이징 모두 회원 id 순서
+        mockMvc.perform(get("/v3/members").param("page", "1").param("size", "2"))
+                .andExpect(jsonPath("$.content[0].username").value("member3"));
+        mockMvc.perform(get("/v3/members").param("page", "1").param("size", "2").param("deferredJoin", "true"))
+                .andExpect(jsonPath("$.content[0].username").value("member3"));
+    }
+
+    @Test
+    public void searchMemberV3InvalidFlags() throws Exception {
+        mockMvc.perform(get("/v3/members").param("deferredJoin", "true").param("concurrentCount", "true"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void searchMemberV4InvalidRequest() throws Exception {
+        mockMvc.perform(get("/v4/members").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v4/members").param("size", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void searchMemberV5SortRejected() throws Exception {
+        mockMvc.perform(get("/v5/members").param("sort", "age,desc"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void searchMemberV3Columnar() throws Exception {
+        mockMvc.perform(get("/v3/members").param("page", "0").param("size", "3")
+                        .accept("application/vnd.querydsl.member-columns+json"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/vnd.querydsl.member-columns+json"))
+                .andExpect(jsonPath("$.username[2]").value("member3"))
+                .andExpect(jsonPath("$.teamNames.length()").value(2))
+                .andExpect(jsonPath("$.team[2]").value(1))
+                .andExpect(jsonPath("$.totalElements").value(4));
+    }
+
+    @Test
+    public void searchMemberV1Cbor() throws Exception {
+        byte[] body = mockMvc.perform(get("/v1/members").param("teamName", "teamB")
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode columns = new CBORMapper().readTree(body);
+        assertEquals("member3", columns.get("username").get(0).asText());
+        assertEquals(40, columns.get("age").get(1).asInt());
+        assertEquals("teamB", columns.get("teamNames").get(0).asText());
+        assertFalse(columns.has("totalElements")); // 페이징 하지 않는 엔드포인트
+    }
+
+    @Test
+    @StatementBudget(1) // 카운트 쿼리 없음
+    public void searchMemberV5() throws Exception {
+        mockMvc.perform(get("/v5/members").param("page", "0").param("size", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(3))
+                .andExpect(jsonPath("$.last").value(false))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+    }
+}
@@ -0,0 +1,173 @@
+package study.querydsl.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 인메모리 H2 3개(primary, replica0, replica1)로 라우팅을 확인한다.
+ * 실제 복제는 없으므로 복제본의 heartbeat를 직접 써서 복제 지연을 흉내낸다.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private static final Duration MAX_LAG = Duration.ofSeconds(5);
+
+    private DataSource replica0;
+    private DataSource replica1;
+    private ReplicaRoutingDataSource routingDataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    public void before() {
+        String suffix = "_" + System.nanoTime();
+        DataSource primary = h2("primary" + suffix);
+        replica0 = h2("replica0" + suffix);
+        replica1 = h2("replica1" + suffix);
+        routingDataSource = new ReplicaRoutingDataSource(primary, Arrays.asList(replica0, replica1), MAX_LAG, Duration.ofSeconds(1));
+        routingDataSource.afterPropertiesSet();
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        routingDataSource.createHeartbeatTable();
+        routingDataSource.heartbeat();
+    }
+
+    @AfterEach
+    public void after() {
+        routingDataSource.close();
+    }
+
+    @Test
+    public void routeByReadOnlyTest() throws Exception {
+        //given 두 복제본 모두 최신
+        replicate(replica0, 0);
+        replicate(replica1, 0);
+        routingDataSource.checkLag();
+
+        //when
+        Set<String> readOnlyDatabases = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            readOnlyDatabases.add(readOnly.execute(status -> database()));
+        }
+        String readWriteDatabase = readWrite.execute(status -> database());
+
+        //then 읽기 전용은 복제본에 번갈아, 나머지는 primary
+        assertThat(readOnlyDatabases).allMatch(name -> name.startsWith("REPLICA")).hasSize(2);
+        assertThat(readWriteDatabase).startsWith("PRIMARY");
+        assertThat(database()).startsWith("PRIMARY"); // 트랜잭션 밖
+    }
+
+    @Test
+    public void laggingReplicaExcludedTest() throws Exception {
+        //given replica1은 1분 지연
+        replicate(replica0, 0);
+        replicate(replica1, 60_000);
+        routingDataSource.checkLag();
+
+        //when, then
+        for (int i = 0; i < 4; i++) {
+            assertThat(readOnly.execute(status -> database())).startsWith("REPLICA0");
+        }
+    }
+
+    @Test
+    public void fallbackToPrimaryTest() throws Exception {
+        //given replica0은 지연, replica1은 heartbeat 테이블이 없음 (확인 실패)
+        replicate(replica0, 60_000);
+        routingDataSource.checkLag();
+
+        //when
+        String database = readOnly.execute(status -> database());
+
+        //then
+        assertThat(database).startsWith("PRIMARY");
+    }
+
+    @Test
+    public void readYourWritesTest() throws Exception {
+        //given
+        replicate(replica0, 0);
+        replicate(replica1, 0);
+        routingDataSource.checkLag();
+
+        //when 변경을 flush한 쓰기 트랜잭션 커밋
+        readWrite.executeWithoutResult(status -> {
+            jdbcTemplate.execute("create table if not exists written (id int)");
+            routingDataSource.markWritten(); // 애플리케이션에서는 EntityChangedEvent로 호출됨
+        });
+
+        //then 커밋 이후의 heartbeat가 보이기 전까지는 primary에서 읽음, 다른 스레드(세션)는 복제본에서 읽음
+        assertThat(readOnly.execute(status -> database())).startsWith("PRIMARY");
+        assertThat(CompletableFuture.supplyAsync(() -> readOnly.execute(status -> database())).join()).startsWith("REPLICA");
+        Thread.sleep(5);
+        replicate(replica0, 0);
+        routingDataSource.checkLag();
+        for (int i = 0; i < 4; i++) {
+            assertThat(readOnly.execute(status -> database())).startsWith("REPLICA0");
+        }
+    }
+
+    @Test
+    public void unchangedWriteTransactionTest() throws Exception {
+        //given
+        replicate(replica0, 0);
+        replicate(replica1, 0);
+        routingDataSource.checkLag();
+
+        //when 변경 없이 끝난 쓰기 트랜잭션
+        readWrite.executeWithoutResult(status -> database());
+
+        //then 기다리지 않고 복제본에서 읽음
+        assertThat(readOnly.execute(status -> database())).startsWith("REPLICA");
+    }
+
+    @Test
+    public void readOnlyJoinsReadWriteTransactionTest() throws Exception {
+        //given
+        replicate(replica0, 0);
+        replicate(replica1, 0);
+        routingDataSource.checkLag();
+
+        //when 쓰기 트랜잭션 안에서 호출된 읽기 전용 메서드는 같은 커넥션(primary)을 사용
+        String database = readWrite.execute(status -> readOnly.execute(inner -> database()));
+
+        //then
+        assertThat(database).startsWith("PRIMARY");
+    }
+
+    private String database() {
+        return jdbcTemplate.queryForObject("select database()", String.class);
+    }
+
+    //복제본에 primary 보다 lagMillis 만큼 늦은 heartbeat를 씀
+    private static void replicate(DataSource replica, long lagMillis) {
+        JdbcTemplate template = new JdbcTemplate(replica);
+        template.execute("create table if not exists replica_heartbeat (id int primary key, beat bigint not null)");
+        template.update("merge into replica_heartbeat (id, beat) key (id) values (1, ?)", System.currentTimeMillis() - lagMillis);
+    }
+
+    private static DataSource h2(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}
@@ -0,0 +1,66 @@
+package study.querydsl.datasource;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 로컬에서는 복제본 url을 primary와 같은 H2 DB로 지정하면 스키마와 heartbeat가 그대로 보이므로
+ * 실제 애플리케이션 설정(replica.enabled=true)으로 라우팅을 확인할 수 있다.
+ * heartbeat는 직접 호출하기 위해 주기를 길게 둔다.
+ */
+@SpringBootTest(properties = {
+        "replica.enabled=true",
+        "replica.urls=jdbc:h2:tcp://localhost/~/querydsl",
+        "replica.heartbeat-interval=1h"})
+class ReplicaRoutingLocalTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ReplicaRoutingDataSource routingDataSource;
+
+    @AfterEach
+    public void after() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> queryFactory.delete(member).execute());
+    }
+
+    @Test
+    public void readYourWritesTest() throws Exception {
+        //given
+        routingDataSource.heartbeat();
+        assertEquals("replica-0", readOnlyLookupKey());
+
+        //when
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> em.persist(new Member("member1")));
+
+        //then 커밋 이후의 heartbeat가 복제본에 보이기 전까지는 primary
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, readOnlyLookupKey());
+        Thread.sleep(5);
+        routingDataSource.heartbeat();
+        assertEquals("replica-0", readOnlyLookupKey());
+    }
+
+    private Object readOnlyLookupKey() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        return readOnly.execute(status -> routingDataSource.determineCurrentLookupKey());
+    }
+}
@@ -0,0 +1,74 @@
+package study.querydsl.entity;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class SecondLevelCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Test
+    public void teamCacheHit() throws Exception {
+        //given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.flush();
+        em.clear();
+
+        CacheRegionStatistics stats = teamRegionStatistics();
+        long hits = stats.getHitCount();
+        long misses = stats.getMissCount();
+
+        //when
+        em.find(Team.class, teamA.getId()); // DB 조회 후 캐시에 저장
+        em.clear();
+        em.find(Team.class, teamA.getId()); // 캐시 적중
+
+        //then
+        assertEquals(stats.getMissCount(), misses + 1);
+        assertEquals(stats.getHitCount(), hits + 1);
+    }
+
+    @Test
+    public void bulkUpdateEvictsTeamCache() throws Exception {
+        //given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.flush();
+        em.clear();
+        em.find(Team.class, teamA.getId());
+        em.clear();
+
+        //when
+        queryFactory
+                .update(team)
+                .set(team.name, "teamB")
+                .execute();
+
+        //then 벌크 연산으로 리전이 비워져 DB에서 변경된 값을 읽어옴
+        Team findTeam = em.find(Team.class, teamA.getId());
+        assertEquals(findTeam.getName(), "teamB");
+    }
+
+    private CacheRegionStatistics teamRegionStatistics() {
+        return em.getEntityManagerFactory().unwrap(SessionFactory.class)
+                .getStatistics()
+                .getDomainDataRegionStatistics(Team.class.getName());
+    }
+}
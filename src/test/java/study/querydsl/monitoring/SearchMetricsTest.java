@@ -0,0 +1,67 @@
+package study.querydsl.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SearchMetricsTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    SearchMetrics searchMetrics = new SearchMetrics(registry);
+    MemberSearchCondition condition = new MemberSearchCondition();
+    List<String> fullPage = Arrays.asList("member1", "member2");
+
+    @Test
+    public void executedCountTest() throws Exception {
+        Page<String> page = searchMetrics.page("test", condition, fullPage, PageRequest.of(0, 2),
+                () -> null, () -> 10L);
+
+        assertEquals(10, page.getTotalElements());
+        assertEquals(1, countOutcome("executed"));
+        assertEquals(1, countTimer().count());
+    }
+
+    @Test
+    public void cachedCountTest() throws Exception {
+        //캐시에서 꺼낸 카운트는 실행으로 세지 않고 count 지연시간에도 기록하지 않음
+        Page<String> page = searchMetrics.page("test", condition, fullPage, PageRequest.of(0, 2),
+                () -> 10L, () -> {
+                    throw new AssertionError("count query executed");
+                });
+
+        assertEquals(10, page.getTotalElements());
+        assertEquals(1, countOutcome("cached"));
+        assertEquals(0, countOutcome("executed"));
+        assertNull(countTimer());
+    }
+
+    @Test
+    public void skippedCountTest() throws Exception {
+        //첫 페이지가 페이지 크기보다 작으면 카운트가 필요없음
+        Page<String> page = searchMetrics.page("test", condition, fullPage, PageRequest.of(0, 10),
+                () -> 10L, () -> 10L);
+
+        assertEquals(2, page.getTotalElements());
+        assertEquals(1, countOutcome("skipped"));
+        assertEquals(0, countOutcome("cached"));
+    }
+
+    private double countOutcome(String outcome) {
+        Counter counter = registry.find("member.search.count").tag("method", "test").tag("outcome", outcome).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private Timer countTimer() {
+        return registry.find("member.search").tag("method", "test").tag("phase", "count").timer();
+    }
+}
@@ -0,0 +1,54 @@
+package study.querydsl.monitoring;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 트랜잭션 단위 스코프는 트랜잭션이 끝날때 monitoring.sql.n-plus-one-threshold 기준으로 N+1 경고를 남긴다.
+ */
+@SpringBootTest(properties = "monitoring.sql.n-plus-one-threshold=3")
+@ExtendWith(OutputCaptureExtension.class)
+class SqlStatementCounterTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Test
+    public void transactionNPlusOneWarningTest(CapturedOutput output) throws Exception {
+        //when 같은 모양의 select를 설정한 횟수만큼 실행
+        transactionTemplate.executeWithoutResult(status -> selectMembers(3));
+
+        //then
+        assertThat(output.getOut()).contains("N+1 suspected in tx");
+    }
+
+    @Test
+    public void belowThresholdTest(CapturedOutput output) throws Exception {
+        //when 기본값(5)이 아니라 설정값(3)보다 적게 실행
+        transactionTemplate.executeWithoutResult(status -> selectMembers(2));
+
+        //then
+        assertThat(output.getOut()).doesNotContain("N+1 suspected");
+    }
+
+    private void selectMembers(int times) {
+        for (int i = 0; i < times; i++) {
+            em.createQuery("select m from Member m where m.username = :username", Member.class)
+                    .setParameter("username", "member" + i)
+                    .getResultList();
+        }
+    }
+}
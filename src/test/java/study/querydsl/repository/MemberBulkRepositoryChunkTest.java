@@ -0,0 +1,100 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.EntityChangedEvent;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 범위마다 따로 커밋되는지 보려면 테스트 트랜잭션 밖에서 실행해야 하므로
+ * 롤백되는 테스트 트랜잭션 대신 데이터를 커밋하고 테스트가 끝나면 지운다.
+ */
+@SpringBootTest(properties = "member.bulk.chunk-size=2")
+@RecordApplicationEvents
+class MemberBulkRepositoryChunkTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MemberBulkRepository memberBulkRepository;
+
+    @Autowired
+    ApplicationEvents events;
+
+    @BeforeEach
+    public void before() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            for (int i = 1; i <= 5; i++) {
+                em.persist(new Member("member" + i, i * 10, teamA));
+            }
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        transactionTemplate.executeWithoutResult(status -> {
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+    }
+
+    @Test
+    public void chunkCommittedTest() throws Exception {
+        //when 범위를 시작할때마다 다른 스레드(다른 트랜잭션)에서 이미 바뀐 회원 수를 셈
+        List<Long> visible = new ArrayList<>();
+        long count = memberBulkRepository.update(new MemberSearchCondition(), update -> {
+            visible.add(CompletableFuture.supplyAsync(this::countUpdated).join());
+            return update.set(member.age, member.age.add(100));
+        });
+
+        //then 회원 id 5개를 2개씩 나눠서 커밋하므로 앞 범위의 변경이 바로 보임
+        assertEquals(5, count);
+        assertThat(visible).containsExactly(0L, 2L, 4L);
+        assertEquals(5L, countUpdated());
+    }
+
+    @Test
+    public void bulkEventPerChunkTest() throws Exception {
+        //when
+        memberBulkRepository.addAge(new MemberSearchCondition(), 1);
+
+        //then 범위마다 커밋되는 변경을 캐시들이 반영하도록 범위마다 벌크 변경 이벤트 발행
+        assertEquals(3, events.stream(EntityChangedEvent.class).filter(EntityChangedEvent::isBulk).count());
+    }
+
+    private Long countUpdated() {
+        return transactionTemplate.execute(status -> queryFactory
+                .select(member.count())
+                .from(member)
+                .where(member.age.goe(100))
+                .fetchOne());
+    }
+}
@@ -0,0 +1,84 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.monitoring.SqlStatementCounter;
+import study.querydsl.monitoring.StatementScope;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@SpringBootTest(properties = "member.bulk.chunk-size=2")
+@Transactional
+class MemberBulkRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberBulkRepository memberBulkRepository;
+
+    private Member member1;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        member1 = new Member("member1", 10, teamA);
+        em.persist(member1);
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 50, teamA));
+    }
+
+    @Test
+    public void addAgeTest() throws Exception {
+        //given
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        em.flush();
+
+        //when
+        StatementScope scope = SqlStatementCounter.open("addAge");
+        long count = memberBulkRepository.addAge(condition, 1);
+        scope.close();
+
+        //then teamA 회원 3명을 2명씩: (다음 id 조회 + update) 2번, 마지막 범위가 덜 찼으므로 더 조회하지 않음
+        assertEquals(3, count);
+        assertEquals(4, scope.getTotal());
+        assertFalse(em.contains(member1)); // 범위마다 영속성 컨텍스트를 비움
+
+        List<Integer> ages = em.createQuery("select m.age from Member m order by m.username", Integer.class).getResultList();
+        assertThat(ages).containsExactly(11, 21, 30, 40, 51);
+    }
+
+    @Test
+    public void deleteTest() throws Exception {
+        //given
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(40);
+
+        //when
+        long count = memberBulkRepository.delete(condition);
+
+        //then
+        assertEquals(3, count);
+        List<String> usernames = em.createQuery("select m.username from Member m order by m.username", String.class).getResultList();
+        assertThat(usernames).containsExactly("member1", "member5");
+    }
+}
@@ -0,0 +1,85 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.event.DataVersion;
+import study.querydsl.event.EntityChangedEvent;
+
+import javax.persistence.EntityManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 트랜잭션이 끝난 후의 무효화를 확인해야 하므로 테스트 트랜잭션(@Transactional) 없이 실행
+ */
+@SpringBootTest
+class MemberCountCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MemberCountCache countCache;
+
+    @Autowired
+    DataVersion dataVersion;
+
+    @Test
+    public void invalidateAfterRollback() throws Exception {
+        //given
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("rolledBack");
+
+        //when flush 후 센 카운트를 캐시에 넣고 롤백
+        transactionTemplate.executeWithoutResult(status -> {
+            em.persist(new Member("rolledBack"));
+            em.flush();
+            assertEquals(1L, countCache.get(condition, () -> 1L));
+            status.setRollbackOnly();
+        });
+
+        //then 롤백된 카운트가 남지 않음
+        assertNull(countCache.getIfPresent(condition));
+    }
+
+    @Test
+    public void dropCountStartedBeforeChange() throws Exception {
+        //given
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("counting");
+
+        //when 세는 도중에 데이터 버전이 바뀜 (캐시를 비운 뒤에 끝난 조회)
+        assertEquals(1L, countCache.get(condition, () -> {
+            dataVersion.onChanged(EntityChangedEvent.bulk(Member.class));
+            return 1L;
+        }));
+
+        //then 이전 버전으로 센 카운트는 쓰지 않고 다시 셈
+        assertNull(countCache.getIfPresent(condition));
+        assertEquals(2L, countCache.get(condition, () -> 2L));
+        assertEquals(2L, countCache.getIfPresent(condition));
+    }
+
+    @Test
+    public void bypassInChangedTransaction() throws Exception {
+        //given
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("uncommitted");
+        assertEquals(0L, countCache.get(condition, () -> 0L));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            //when flush 하지 않은 변경도 먼저 flush해서 캐시 대신 직접 셈
+            em.persist(new Member("uncommitted"));
+            assertEquals(1L, countCache.get(condition, () -> 1L));
+            status.setRollbackOnly();
+        });
+    }
+}
@@ -1,5 +1,6 @@
 package study.querydsl.repository;
 
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -8,12 +9,16 @@ import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.monitoring.SqlStatementCounter;
+import study.querydsl.monitoring.StatementScope;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 @Transactional
@@ -120,4 +125,114 @@ class MemberJpaRepositoryTest {
         //then
         assertThat(result).extracting("username").containsExactly("member4");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void searchStreamTest() throws Exception {
+        //given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+
+        //when
+        List<MemberTeamDto> result = new ArrayList<>();
+        memberJpaRepository.searchStream(condition, result::add);
+
+        //then
+        assertThat(result).extracting("username").containsExactlyInAnyOrder("member3", "member4");
+    }
+
+    @Test
+    public void saveAllTest() throws Exception {
+        //given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            members.add(new Member("member" + i, i, teamA));
+        }
+
+        //when
+        memberJpaRepository.saveAll(members);
+
+        //then
+        Long count = em.createQuery("select count(m) from Member m", Long.class).getSingleResult();
+        assertEquals(count, 250L);
+    }
+
+    @Test
+    public void findAllTeamBatchFetch() throws Exception {
+        //given 회원마다 다른 팀
+        for (int i = 0; i < 5; i++) {
+            Team team = new Team("team" + i);
+            em.persist(team);
+            em.persist(new Member("member" + i, i, team));
+        }
+        em.flush();
+        em.clear();
+
+        //when
+        StatementScope scope = SqlStatementCounter.open("findAllTeamBatchFetch");
+        for (Member member : memberJpaRepository.findAll_Querydsl()) {
+            member.getTeam().getName(); // 지연로딩, 첫 팀 초기화때 나머지 팀도 IN 쿼리로 같이 조회
+        }
+        scope.close();
+
+        //then 회원 조회 1번 + 팀 조회 1번 (배치 페치가 없으면 팀마다 select 되는 N+1)
+        assertThat(scope.repeatedSelects(2)).isEmpty();
+        assertEquals(2, scope.getTotal());
+    }
+
+    @Test
+    public void teamMembersBatchFetch() throws Exception {
+        //given
+        for (int i = 0; i < 5; i++) {
+            Team team = new Team("team" + i);
+            em.persist(team);
+            em.persist(new Member("member" + i, i, team));
+            em.persist(new Member("member" + i + "-2", i, team));
+        }
+        em.flush();
+        em.clear();
+
+        //when
+        StatementScope scope = SqlStatementCounter.open("teamMembersBatchFetch");
+        List<Team> teams = em.createQuery("select t from Team t", Team.class).getResultList();
+        for (Team team : teams) {
+            assertEquals(2, team.getMembers().size());
+        }
+        scope.close();
+
+        //then 팀 조회 1번 + 회원 컬렉션 조회 1번
+        assertEquals(2, scope.getTotal());
+    }
+
+    @Test
+    public void findReadOnlyTest() throws Exception {
+        //given
+        memberJpaRepository.save(new Member("member1", 10));
+        em.flush();
+        em.clear();
+
+        //when
+        List<Member> all = memberJpaRepository.findAll_Querydsl();
+        Member findMember = all.get(0);
+        findMember.setAge(20);
+        em.flush(); // 읽기 전용 엔티티는 스냅샷이 없으므로 변경 감지 대상이 아님
+        em.clear();
+
+        //then
+        assertEquals(10, memberJpaRepository.findByUsername("member1").get(0).getAge());
+        assertTrue(em.unwrap(Session.class).isReadOnly(memberJpaRepository.findAll().get(0)));
+    }
+}
@@ -0,0 +1,99 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 동시 카운트는 별도 트랜잭션에서 실행되므로 롤백되는 테스트 트랜잭션(@Transactional) 대신
+ * 데이터를 커밋하고 테스트가 끝나면 지운다.
+ */
+@SpringBootTest
+class MemberPageConcurrentTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberSupportRepository memberSupportRepository;
+
+    @BeforeEach
+    public void before() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+
+            for (int i = 0; i < 10; i++) {
+                em.persist(new Member("member" + i, i * 10, i % 2 == 0 ? teamA : teamB));
+            }
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        transactionTemplate.executeWithoutResult(status -> {
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+    }
+
+    @Test
+    public void searchPageConcurrentTest() throws Exception {
+        //given
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+        PageRequest pageRequest = PageRequest.of(0, 2);
+
+        //when
+        Page<MemberTeamDto> result = memberRepository.searchPageConcurrent(condition, pageRequest);
+
+        //then
+        assertEquals(5, result.getTotalElements());
+        assertThat(result.getContent()).extracting("username").containsExactly("member1", "member3");
+        assertThat(result.getContent())
+                .isEqualTo(memberRepository.searchPageComplex(condition, pageRequest).getContent());
+    }
+
+    @Test
+    public void applyPaginationConcurrentlyTest() throws Exception {
+        //given
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(30);
+
+        //when
+        Page<MemberTeamDto> result = memberSupportRepository.searchPageConcurrent(condition, PageRequest.of(1, 3));
+
+        //then
+        assertEquals(7, result.getTotalElements());
+        assertEquals(3, result.getTotalPages());
+        assertThat(result.getContent()).hasSize(3);
+    }
+}
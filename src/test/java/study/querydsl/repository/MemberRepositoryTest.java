@@ -5,6 +5,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
@@ -12,10 +14,16 @@ import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Transactional
 @SpringBootTest
@@ -105,4 +113,243 @@ public class MemberRepositoryTest {
         assertEquals(result.getSize(), 3);
         assertThat(result.getContent()).extracting("username").containsExactly("member1","member2","member3");
     }
+
+    @Test
+    public void searchPageSimpleSupportTest() throws Exception {
+        //given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        for (int i = 0; i < 6; i++) {
+            em.persist(new Member("member" + i, i * 10, i % 2 == 0 ? teamA : teamB));
+        }
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+        condition.setAgeGoe(20);
+
+        //when
+        List<MemberTeamDto> result = memberRepository.searchPageSimpleSupport(condition, PageRequest.of(0, 10));
+        Page<MemberTeamDto> page = memberRepository.searchPageSimple(condition, PageRequest.of(0, 1));
+
+        //then 조건이 적용되어야함
+        assertThat(result).extracting("username").containsExactlyInAnyOrder("member3", "member5");
+        assertEquals(2, page.getTotalElements());
+    }
+
+    @Test
+    public void searchPageComplexCountCacheTest() throws Exception {
+        //given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        for (int i = 0; i < 4; i++) {
+            em.persist(new Member("member" + i, i * 10, teamA));
+        }
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        PageRequest pageRequest = PageRequest.of(0, 2);
+
+        Page<MemberTeamDto> before = memberRepository.searchPageComplex(condition, pageRequest);
+
+        //when
+        em.persist(new Member("member4", 40, teamA));
+        em.flush(); // flush시 변경 이벤트로 카운트 캐시가 비워짐
+
+        Page<MemberTeamDto> after = memberRepository.searchPageComplex(condition, pageRequest);
+
+        //then
+        assertEquals(before.getTotalElements(), 4);
+        assertEquals(after.getTotalElements(), 5);
+    }
+
+    @Test
+    public void searchAllShapesTest() throws Exception {
+        //given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        List<Member> members = Arrays.asList(
+                new Member("member1", 10, teamA),
+                new Member("member2", 20, teamA),
+                new Member("member3", 30, teamB),
+                new Member("member4", 40, teamB));
+        members.forEach(em::persist);
+
+        //when, then 조건 4개의 모든 조합(16가지)이 메모리에서 거른 결과와 같아야함
+        for (int shape = 0; shape < 16; shape++) {
+            MemberSearchCondition condition = new MemberSearchCondition();
+            if ((shape & MemberSearchQueryCache.USERNAME) != 0) condition.setUsername("member4");
+            if ((shape & MemberSearchQueryCache.TEAM_NAME) != 0) condition.setTeamName("teamB");
+            if ((shape & MemberSearchQueryCache.AGE_GOE) != 0) condition.setAgeGoe(25);
+            if ((shape & MemberSearchQueryCache.AGE_LOE) != 0) condition.setAgeLoe(40);
+
+            List<String> expected = members.stream()
+                    .filter(m -> condition.getUsername() == null || m.getUsername().equals(condition.getUsername()))
+                    .filter(m -> condition.getTeamName() == null || m.getTeam().getName().equals(condition.getTeamName()))
+                    .filter(m -> condition.getAgeGoe() == null || m.getAge() >= condition.getAgeGoe())
+                    .filter(m -> condition.getAgeLoe() == null || m.getAge() <= condition.getAgeLoe())
+                    .map(Member::getUsername)
+                    .collect(Collectors.toList());
+
+            List<MemberTeamDto> result = memberRepository.search(condition);
+
+            assertThat(result).extracting("username").containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+
+    @Test
+    public void searchPageDeferredJoinTest() throws Exception {
+        //given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        for (int i = 0; i < 10; i++) {
+            em.persist(new Member("member" + i, i * 10, i % 2 == 0 ? teamA : teamB));
+        }
+        em.persist(new Member("memberWithoutTeam", 100));
+
+        //when, then 모든 페이지가 id 순서로 조회되고 팀이 없는 회원도 포함되어야함
+        for (int shape : new int[]{0, MemberSearchQueryCache.TEAM_NAME, MemberSearchQueryCache.AGE_GOE}) {
+            MemberSearchCondition condition = new MemberSearchCondition();
+            if ((shape & MemberSearchQueryCache.TEAM_NAME) != 0) condition.setTeamName("teamB");
+            if ((shape & MemberSearchQueryCache.AGE_GOE) != 0) condition.setAgeGoe(30);
+
+            List<MemberTeamDto> expected = memberRepository.search(condition).stream()
+                    .sorted(Comparator.comparing(MemberTeamDto::getMemberId))
+                    .collect(Collectors.toList());
+
+            List<MemberTeamDto> pages = new ArrayList<>();
+            Page<MemberTeamDto> page = memberRepository.searchPageDeferredJoin(condition, PageRequest.of(0, 3));
+            pages.addAll(page.getContent());
+            while (page.hasNext()) {
+                page = memberRepository.searchPageDeferredJoin(condition, page.nextPageable());
+                pages.addAll(page.getContent());
+            }
+
+            assertEquals(expected.size(), page.getTotalElements());
+            assertThat(pages).extracting("memberId").containsExactlyElementsOf(
+                    expected.stream().map(MemberTeamDto::getMemberId).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void searchUsernameContainsTest() throws Exception {
+        //given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        em.persist(new Member("kim", 10, teamA));
+        em.persist(new Member("kimchi", 20, teamA));
+        em.persist(new Member("parkkim", 30, teamA));
+        em.persist(new Member("park", 40));
+        em.persist(new Member("100%", 50));
+
+        //when, then
+        assertThat(memberRepository.search(containing("kim", null)))
+                .extracting("username").containsExactlyInAnyOrder("kim", "kimchi", "parkkim");
+        assertThat(memberRepository.search(containing(null, "park")))
+                .extracting("username").containsExactlyInAnyOrder("park", "parkkim");
+        assertThat(memberRepository.search(containing("kim", "park")))
+                .extracting("username").containsExactly("parkkim");
+        assertThat(memberRepository.search(containing("i", null))) // 3글자보다 짧은 검색어
+                .extracting("username").containsExactlyInAnyOrder("kim", "kimchi", "parkkim");
+        assertThat(memberRepository.search(containing("0%", null))) // LIKE 특수문자는 문자 그대로 검색
+                .extracting("username").containsExactly("100%");
+        assertThat(memberRepository.search(containing("lee", null))).isEmpty();
+
+        MemberSearchCondition condition = containing("kim", null);
+        condition.setAgeGoe(20);
+        Page<MemberTeamDto> page = memberRepository.searchPageComplex(condition, PageRequest.of(0, 1));
+        assertEquals(2, page.getTotalElements());
+    }
+
+    @Test
+    public void searchUsernameContainsAfterRenameTest() throws Exception {
+        //given
+        Member member = new Member("kim", 10);
+        em.persist(member);
+        assertThat(memberRepository.search(containing("kim", null))).hasSize(1);
+
+        //when 커밋되지 않은 변경은 인덱스에 없으므로 이 트랜잭션에서는 LIKE로만 거름
+        member.setUsername("lee");
+
+        //then
+        assertThat(memberRepository.search(containing("kim", null))).isEmpty();
+        assertThat(memberRepository.search(containing(null, "le"))).extracting("username").containsExactly("lee");
+    }
+
+    @Test
+    public void searchUsernameContainsDynamicQueryTest() throws Exception {
+        //given
+        em.persist(new Member("kim", 10));
+        em.persist(new Member("parkkim", 20));
+        em.persist(new Member("park", 30));
+        em.persist(new Member("1_0", 40));
+        PageRequest pageRequest = PageRequest.of(0, 10);
+
+        //when, then 동적 쿼리로 만드는 검색도 회원명 부분/접두어 조건을 적용
+        assertThat(memberRepository.searchPageSimple(containing("kim", null), pageRequest).getContent())
+                .extracting("username").containsExactlyInAnyOrder("kim", "parkkim");
+        assertThat(memberRepository.searchPageSimpleSupport(containing(null, "park"), pageRequest))
+                .extracting("username").containsExactlyInAnyOrder("park", "parkkim");
+        assertThat(memberRepository.searchPageSimple(containing("_", null), pageRequest).getContent())
+                .extracting("username").containsExactly("1_0");
+    }
+
+    private static MemberSearchCondition containing(String contains, String startsWith) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernameContains(contains);
+        condition.setUsernameStartsWith(startsWith);
+        return condition;
+    }
+
+    @Test
+    public void searchSliceTest() throws Exception {
+        //given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("member" + i, i * 10, teamA));
+        }
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        //when
+        Slice<MemberTeamDto> first = memberRepository.searchSlice(condition, PageRequest.of(0, 3));
+        Slice<MemberTeamDto> last = memberRepository.searchSlice(condition, first.nextPageable());
+
+        //then
+        assertTrue(first.hasNext());
+        assertThat(first.getContent()).extracting("username").containsExactly("member0", "member1", "member2");
+        assertFalse(last.hasNext());
+        assertThat(last.getContent()).extracting("username").containsExactly("member3", "member4");
+    }
+
+    @Test
+    public void searchSliceOrderedByIdTest() throws Exception {
+        //given
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("member" + (4 - i), 10));
+        }
+
+        //when 정렬 파라미터와 상관없이 회원 id 순서
+        Slice<MemberTeamDto> first = memberRepository.searchSlice(new MemberSearchCondition(),
+                PageRequest.of(0, 3, Sort.by("username")));
+
+        //then
+        assertThat(first.getContent()).extracting("username").containsExactly("member4", "member3", "member2");
+    }
 }
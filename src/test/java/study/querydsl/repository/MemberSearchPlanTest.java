@@ -0,0 +1,182 @@
+package study.querydsl.repository;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * 검색 조건 모양별로 실제 실행되는 SQL을 잡아서 H2 EXPLAIN으로 실행 계획을 확인한다.
+ * 조건이 하나라도 있는 모양에서 테이블 풀 스캔(tableScan)이 나오면 실패한다. (조건이 없는 모양은 스캔이 당연하므로 제외)
+ * 빈 테이블이면 옵티마이저가 인덱스를 고를 이유가 없으므로 먼저 회원을 넣고, SQL은 p6spy가 값을 채운 그대로 EXPLAIN 한다.
+ * 팀/회원은 이벤트 없이 SQL로 넣어서 팀 사전, 회원명 인덱스가 이 트랜잭션을 변경된 것으로 보지 않게 한다.
+ */
+@SpringBootTest
+@Transactional
+class MemberSearchPlanTest {
+
+    private static final int TEAMS = 10;
+    private static final int MEMBERS = 2000;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    MemberSearchQueryCache searchQueryCache;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    SqlCapture sqlCapture;
+
+    @BeforeEach
+    public void before() {
+        List<Object[]> teams = new ArrayList<>();
+        for (int i = 0; i < TEAMS; i++) {
+            teams.add(new Object[]{-(i + 1L), "team" + i});
+        }
+        jdbcTemplate.batchUpdate("insert into team (id, name) values (?, ?)", teams);
+
+        List<Object[]> members = new ArrayList<>();
+        for (int i = 0; i < MEMBERS; i++) {
+            members.add(new Object[]{-(i + 1L), "member" + i, i % 100, -(i % TEAMS + 1L)});
+        }
+        jdbcTemplate.batchUpdate("insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)", members);
+    }
+
+    @Test
+    public void searchShapesUseIndexTest() throws Exception {
+        for (int shape = 1; shape < 16; shape++) {
+            MemberSearchCondition condition = conditionOf(shape);
+
+            List<String> statements = capture(() -> {
+                searchQueryCache.search(condition);
+                searchQueryCache.search(condition, 10, 10);
+                searchQueryCache.count(condition);
+                searchQueryCache.searchDeferredJoin(condition, 10, 10);
+            });
+
+            assertThat(statements).isNotEmpty();
+            for (String sql : statements) {
+                assertThat(explain(sql))
+                        .as("%s: %s", MemberSearchQueryCache.shapeName(shape), sql)
+                        .doesNotContainIgnoringCase("tableScan");
+            }
+        }
+    }
+
+    @Test
+    public void ageSearchWithoutTeamJoinTest() throws Exception {
+        //given 팀 변경을 flush한 트랜잭션은 팀을 조인하므로 팀은 이벤트 없이 넣음
+        em.createNativeQuery("insert into team (id, name) values (-100, 'teamA')").executeUpdate();
+        Team teamA = em.find(Team.class, -100L);
+        em.persist(new Member("plan1", 1000, teamA));
+        em.persist(new Member("plan2", 1001));
+        em.flush();
+        em.clear();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(1000);
+        condition.setAgeLoe(1001);
+        List<MemberTeamDto> result = new ArrayList<>();
+
+        //when
+        List<String> statements = capture(() -> {
+            result.addAll(searchQueryCache.search(condition));
+            searchQueryCache.count(condition);
+            searchQueryCache.searchDeferredJoin(condition, 0, 10);
+        });
+
+        //then 팀 id는 member.team_id에서, 팀 이름은 사전에서 채움
+        assertThat(statements).noneMatch(sql -> sql.toLowerCase().contains("join"));
+        assertThat(result).extracting("username", "teamId", "teamName").containsExactlyInAnyOrder(
+                tuple("plan1", teamA.getId(), "teamA"),
+                tuple("plan2", null, null));
+    }
+
+    @Test
+    public void findByUsernameUsesIndexTest() throws Exception {
+        MemberSearchCondition condition = conditionOf(MemberSearchQueryCache.USERNAME);
+
+        List<String> statements = capture(() -> memberRepository.findByUsername(condition.getUsername()));
+
+        assertThat(statements).hasSize(1);
+        assertThat(explain(statements.get(0))).doesNotContainIgnoringCase("tableScan");
+    }
+
+    private static MemberSearchCondition conditionOf(int shape) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        if ((shape & MemberSearchQueryCache.USERNAME) != 0) condition.setUsername("member1");
+        if ((shape & MemberSearchQueryCache.TEAM_NAME) != 0) condition.setTeamName("team1");
+        if ((shape & MemberSearchQueryCache.AGE_GOE) != 0) condition.setAgeGoe(10);
+        if ((shape & MemberSearchQueryCache.AGE_LOE) != 0) condition.setAgeLoe(40);
+        return condition;
+    }
+
+    private List<String> capture(Runnable queries) {
+        List<String> statements = sqlCapture.start();
+        try {
+            queries.run();
+        } finally {
+            sqlCapture.stop();
+        }
+        return statements;
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+    }
+
+    @TestConfiguration
+    static class SqlCaptureConfig {
+        @Bean
+        SqlCapture sqlCapture() {
+            return new SqlCapture();
+        }
+    }
+
+    //p6spy가 실행한 SQL을 파라미터 값이 채워진 그대로 모음 (IN 절도 실제 값 개수 그대로)
+    static class SqlCapture extends JdbcEventListener {
+        private final ThreadLocal<List<String>> statements = new ThreadLocal<>();
+
+        List<String> start() {
+            List<String> captured = new ArrayList<>();
+            statements.set(captured);
+            return captured;
+        }
+
+        void stop() {
+            statements.remove();
+        }
+
+        @Override
+        public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+            List<String> captured = statements.get();
+            if (captured != null) {
+                captured.add(statementInformation.getSqlWithValues());
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.KeysetSlice;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@Transactional
+class MemberSupportRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberSupportRepository memberSupportRepository;
+
+    @Test
+    public void searchKeysetTest() throws Exception {
+        //given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 20, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 50, teamB));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+
+        //when
+        KeysetSlice<MemberTeamDto> first = memberSupportRepository.searchKeyset(condition, null, 2);
+        KeysetSlice<MemberTeamDto> second = memberSupportRepository.searchKeyset(condition, first.getNextCursor(), 2);
+
+        //then
+        assertTrue(first.isHasNext());
+        assertThat(first.getContent()).extracting("username").containsExactly("member2", "member3");
+        assertFalse(second.isHasNext());
+        assertNull(second.getNextCursor());
+        assertThat(second.getContent()).extracting("username").containsExactly("member4", "member5");
+    }
+}
@@ -0,0 +1,130 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.monitoring.SqlStatementCounter;
+import study.querydsl.monitoring.StatementScope;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 사전은 커밋 후에 갱신되므로 데이터를 커밋하고 테스트가 끝나면 지운다.
+ */
+@SpringBootTest
+class TeamNameDictionaryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    TeamNameDictionary teamNames;
+
+    @Autowired
+    MemberSearchQueryCache searchQueryCache;
+
+    @AfterEach
+    public void after() {
+        transactionTemplate.executeWithoutResult(status -> {
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+    }
+
+    @Test
+    public void followTeamChanges() throws Exception {
+        //given
+        Long[] ids = transactionTemplate.execute(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            return new Long[]{teamA.getId(), teamB.getId()};
+        });
+
+        //when
+        transactionTemplate.executeWithoutResult(status -> {
+            em.find(Team.class, ids[0]).setName("teamA2");
+            em.remove(em.find(Team.class, ids[1]));
+        });
+
+        //then 변경이 커밋 후에 반영되어 DB 조회 없이 응답
+        try (StatementScope scope = SqlStatementCounter.open("dictionary")) {
+            Map<Long, String> names = teamNames.resolve(Arrays.asList(ids[0], ids[1], null));
+
+            assertEquals(Collections.singletonMap(ids[0], "teamA2"), names);
+            assertEquals(1, scope.getTotal()); // 삭제된 팀B는 사전에 없으므로 DB 확인
+        }
+    }
+
+    @Test
+    public void uncommittedRenameOnlyVisibleToWriter() throws Exception {
+        //given
+        Long teamId = transactionTemplate.execute(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            em.persist(new Member("member1", 10, teamA));
+            return teamA.getId();
+        });
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(10);
+
+        //when 팀 이름을 바꾸고 flush만 하고 롤백
+        transactionTemplate.executeWithoutResult(status -> {
+            em.find(Team.class, teamId).setName("renamed");
+            em.flush();
+
+            //then 쓰는 트랜잭션은 팀을 조인해서 자기 변경을 읽고, 다른 스레드는 커밋된 이름을 읽음
+            assertThat(searchQueryCache.search(condition)).extracting("teamName").containsExactly("renamed");
+            List<MemberTeamDto> other = CompletableFuture.supplyAsync(() ->
+                    transactionTemplate.execute(s -> searchQueryCache.search(condition))).join();
+            assertThat(other).extracting("teamName").containsExactly("teamA");
+            status.setRollbackOnly();
+        });
+        assertEquals("teamA", teamNames.resolve(Collections.singletonList(teamId)).get(teamId));
+    }
+
+    @Test
+    @Transactional
+    public void loadMissingTeams() throws Exception {
+        //given 이벤트 없이 들어간 팀
+        em.createNativeQuery("insert into team (id, name) values (-1, 'nativeTeam')").executeUpdate();
+
+        //when
+        try (StatementScope scope = SqlStatementCounter.open("dictionary")) {
+            Map<Long, String> first = teamNames.resolve(Collections.singletonList(-1L));
+            Map<Long, String> second = teamNames.resolve(Collections.singletonList(-1L));
+
+            //then 처음 한번만 조회
+            assertEquals("nativeTeam", first.get(-1L));
+            assertEquals(first, second);
+            assertEquals(1, scope.getTotal());
+        }
+        assertFalse(teamNames.resolve(Collections.singletonList(-2L)).containsKey(-2L));
+    }
+}
@@ -0,0 +1,159 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 인덱스는 커밋 후에 갱신되므로 롤백되는 테스트 트랜잭션 대신 데이터를 커밋하고 테스트가 끝나면 지운다.
+ */
+@SpringBootTest
+class UsernameIndexTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    UsernameIndex usernameIndex;
+
+    @AfterEach
+    public void after() {
+        transactionTemplate.executeWithoutResult(status -> queryFactory.delete(member).execute());
+    }
+
+    @Test
+    public void followMemberChanges() throws Exception {
+        //given
+        Long[] ids = transactionTemplate.execute(status -> {
+            Member kim = new Member("kim");
+            Member kimchi = new Member("kimchi");
+            em.persist(kim);
+            em.persist(kimchi);
+            em.persist(new Member("park"));
+            return new Long[]{kim.getId(), kimchi.getId()};
+        });
+        usernameIndex.refresh();
+        assertThat(usernameIndex.match("kim", null, 10)).containsExactlyInAnyOrder(ids[0], ids[1]);
+
+        //when
+        transactionTemplate.executeWithoutResult(status -> {
+            em.find(Member.class, ids[1]).setUsername("lee");
+            em.remove(em.find(Member.class, ids[0]));
+            em.persist(new Member("parkkim"));
+        });
+
+        //then
+        assertThat(usernameIndex.match("kim", null, 10)).hasSize(1);
+        assertThat(usernameIndex.match(null, "lee", 10)).containsExactly(ids[1]);
+        assertThat(usernameIndex.match(null, "park", 10)).hasSize(2);
+    }
+
+    @Test
+    public void uncommittedRenameNotIndexed() throws Exception {
+        //given
+        Long id = transactionTemplate.execute(status -> {
+            Member kim = new Member("kim");
+            em.persist(kim);
+            return kim.getId();
+        });
+        usernameIndex.refresh();
+        assertThat(usernameIndex.match("kim", null, 10)).containsExactly(id);
+
+        //when 이름을 바꾸고 flush만 한 뒤 롤백
+        transactionTemplate.executeWithoutResult(status -> {
+            em.find(Member.class, id).setUsername("lee");
+            em.flush();
+
+            //then 쓰는 트랜잭션만 표시되고, 다른 트랜잭션은 커밋된 이름으로 찾음
+            assertTrue(usernameIndex.isChangedInCurrentTransaction());
+            assertThat(CompletableFuture.supplyAsync(() -> usernameIndex.match("kim", null, 10)).join())
+                    .containsExactly(id);
+            status.setRollbackOnly();
+        });
+        assertThat(usernameIndex.match("kim", null, 10)).containsExactly(id);
+        assertThat(usernameIndex.match("lee", null, 10)).isEmpty();
+    }
+
+    @Test
+    public void tooManyCandidates() throws Exception {
+        //given
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < 5; i++) {
+                em.persist(new Member("member" + i));
+            }
+        });
+        usernameIndex.refresh();
+
+        //when, then 후보가 limit보다 많으면 null
+        assertNull(usernameIndex.match("member", null, 3));
+        assertNull(usernameIndex.match(null, "mem", 3));
+        //한쪽 조건만 선택도가 높으면 그 조건의 후보를 사용
+        assertThat(usernameIndex.match("member", "member4", 3)).hasSize(1);
+    }
+
+    @Test
+    public void bulkUpdateOfOtherPropertyIgnored() throws Exception {
+        //given
+        Long id = transactionTemplate.execute(status -> {
+            Member kim = new Member("kim", 10);
+            em.persist(kim);
+            return kim.getId();
+        });
+        usernameIndex.refresh();
+
+        //when 나이만 바꾸는 벌크 update
+        transactionTemplate.executeWithoutResult(status -> queryFactory
+                .update(member)
+                .set(member.age, member.age.add(1))
+                .execute());
+
+        //then 인덱스를 버리지 않고 그대로 사용
+        assertThat(usernameIndex.match("kim", null, 10)).containsExactly(id);
+    }
+
+    @Test
+    public void rebuildAfterBulkRename() throws Exception {
+        //given
+        Long id = transactionTemplate.execute(status -> {
+            Member kim = new Member("kim");
+            em.persist(kim);
+            return kim.getId();
+        });
+        usernameIndex.refresh();
+
+        //when 이름을 바꾸는 벌크 update
+        transactionTemplate.executeWithoutResult(status -> queryFactory
+                .update(member)
+                .set(member.username, "lee")
+                .execute());
+
+        //then 별도 스레드에서 다시 만들때까지는 null(DB LIKE로만 거름), 다 만들면 새 이름으로 찾음
+        long deadline = System.currentTimeMillis() + 5000;
+        Set<Long> result = usernameIndex.match("lee", null, 10);
+        while (result == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            result = usernameIndex.match("lee", null, 10);
+        }
+        assertThat(result).containsExactly(id);
+        assertThat(usernameIndex.match("kim", null, 10)).isEmpty();
+    }
+}
@@ -0,0 +1,96 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 인덱스는 커밋 후에 갱신되므로 롤백되는 테스트 트랜잭션 대신 데이터를 커밋하고 테스트가 끝나면 지운다.
+ */
+@SpringBootTest
+class UsernamePredicatesTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    UsernamePredicates usernamePredicates;
+
+    @Autowired
+    UsernameIndex usernameIndex;
+
+    private Long parkId;
+
+    @BeforeEach
+    public void before() {
+        parkId = transactionTemplate.execute(status -> {
+            em.persist(new Member("kim"));
+            em.persist(new Member("kimchi"));
+            Member park = new Member("park");
+            em.persist(park);
+            return park.getId();
+        });
+        usernameIndex.refresh();
+    }
+
+    @AfterEach
+    public void after() {
+        transactionTemplate.executeWithoutResult(status -> queryFactory.delete(member).execute());
+    }
+
+    @Test
+    public void indexCandidatesTest() throws Exception {
+        //when, then 인덱스 후보 id와 LIKE로 거름
+        assertThat(usernamePredicates.candidateIds("kim", null)).hasSize(2);
+        assertThat(usernames(contains("kim"))).containsExactly("kim", "kimchi");
+        //후보가 없으면 in ()은 항상 거짓
+        assertThat(usernames(contains("lee"))).isEmpty();
+    }
+
+    @Test
+    public void changedInTransactionTest() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            //when 아직 flush 하지 않은 이름 변경
+            em.find(Member.class, parkId).setUsername("kimura");
+
+            //then 먼저 flush하고, 인덱스에 없는 변경이므로 LIKE로만 거름
+            assertNull(usernamePredicates.candidateIds("kim", null));
+            assertThat(usernames(contains("kim"))).containsExactly("kim", "kimchi", "kimura");
+            status.setRollbackOnly();
+        });
+    }
+
+    private List<String> usernames(MemberSearchCondition condition) {
+        return queryFactory
+                .select(member.username)
+                .from(member)
+                .where(usernamePredicates.of(condition))
+                .orderBy(member.username.asc())
+                .fetch();
+    }
+
+    private static MemberSearchCondition contains(String part) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernameContains(part);
+        return condition;
+    }
+}
@@ -0,0 +1,123 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.junit.jupiter.api.Test;
+import study.querydsl.entity.QMember;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+class CountQueryBuilderTest {
+
+    @Test
+    public void dropUnreferencedLeftJoin() throws Exception {
+        JPAQuery<?> content = new JPAQuery<>()
+                .select(member.username, team.name)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.age.goe(20))
+                .orderBy(team.name.desc())
+                .offset(10)
+                .limit(10);
+
+        assertEquals("select count(member1)\n" +
+                "from Member member1\n" +
+                "where member1.age >= ?1", jpql(CountQueryBuilder.countMetadata(content.getMetadata())));
+    }
+
+    @Test
+    public void keepReferencedLeftJoin() throws Exception {
+        JPAQuery<?> content = new JPAQuery<>()
+                .select(member.username)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(team.name.eq("teamA"));
+
+        assertEquals("select count(member1)\n" +
+                "from Member member1\n" +
+                "  left join member1.team as team\n" +
+                "where team.name = ?1", jpql(CountQueryBuilder.countMetadata(content.getMetadata())));
+    }
+
+    @Test
+    public void keepRowChangingJoins() throws Exception {
+        //inner join은 팀 없는 회원을, 컬렉션 join은 회원 수만큼 행을 바꾸므로 유지
+        QMember teamMember = new QMember("teamMember");
+        JPAQuery<?> content = new JPAQuery<>()
+                .select(team.name)
+                .from(team)
+                .leftJoin(team.members, teamMember)
+                .fetchJoin();
+
+        assertEquals("select count(team)\n" +
+                "from Team team\n" +
+                "  left join team.members as teamMember", jpql(CountQueryBuilder.countMetadata(content.getMetadata())));
+
+        JPAQuery<?> innerJoin = new JPAQuery<>()
+                .select(member.username)
+                .from(member)
+                .join(member.team, team);
+
+        assertEquals("select count(member1)\n" +
+                "from Member member1\n" +
+                "  inner join member1.team as team", jpql(CountQueryBuilder.countMetadata(innerJoin.getMetadata())));
+    }
+
+    @Test
+    public void countDistinct() throws Exception {
+        JPAQuery<?> content = new JPAQuery<>()
+                .select(member)
+                .distinct()
+                .from(member);
+
+        assertEquals("select count(distinct member1)\n" +
+                "from Member member1", jpql(CountQueryBuilder.countMetadata(content.getMetadata())));
+    }
+
+    @Test
+    public void countDistinctProjection() throws Exception {
+        //회원 수가 아니라 회원이 있는 팀 이름 수를 셈, 팀 이름을 세려면 left join도 유지
+        JPAQuery<?> content = new JPAQuery<>()
+                .select(team.name)
+                .distinct()
+                .from(member)
+                .leftJoin(member.team, team);
+
+        assertEquals("select count(distinct team.name)\n" +
+                "from Member member1\n" +
+                "  left join member1.team as team", jpql(CountQueryBuilder.countMetadata(content.getMetadata())));
+    }
+
+    @Test
+    public void distinctMultiColumnNotSupported() throws Exception {
+        JPAQuery<?> content = new JPAQuery<>()
+                .select(member.username, team.name)
+                .distinct()
+                .from(member)
+                .leftJoin(member.team, team);
+
+        assertThrows(IllegalArgumentException.class, () -> CountQueryBuilder.countMetadata(content.getMetadata()));
+    }
+
+    @Test
+    public void groupByNotSupported() throws Exception {
+        JPAQuery<?> content = new JPAQuery<>()
+                .select(team.name, member.count())
+                .from(member)
+                .join(member.team, team)
+                .groupBy(team.name);
+
+        assertThrows(IllegalArgumentException.class, () -> CountQueryBuilder.countMetadata(content.getMetadata()));
+    }
+
+    private static String jpql(QueryMetadata metadata) {
+        JPQLSerializer serializer = new JPQLSerializer(HQLTemplates.DEFAULT);
+        serializer.serialize(metadata, false, null);
+        return serializer.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class CountQueryExecutorTest {
+
+    //작업 스레드 1개, 트랜잭션은 mock
+    CountQueryExecutor executor = new CountQueryExecutor(mock(PlatformTransactionManager.class), 1, 10,
+            Duration.ofMillis(100));
+    CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    public void after() {
+        release.countDown();
+        executor.destroy();
+    }
+
+    @Test
+    public void awaitCount() throws Exception {
+        CompletableFuture<Long> total = executor.submit(() -> 7L);
+
+        assertEquals(7L, executor.await(total, () -> -1L));
+    }
+
+    @Test
+    public void fallbackWhenCountIsLate() throws Exception {
+        //given 작업 스레드가 커넥션을 기다리는 상황
+        executor.submit(this::blocked);
+        AtomicBoolean queuedRan = new AtomicBoolean();
+        CompletableFuture<Long> total = executor.submit(() -> {
+            queuedRan.set(true);
+            return 7L;
+        });
+
+        //when
+        long count = executor.await(total, () -> 3L);
+
+        //then 호출 스레드에서 세고 큐에 남은 카운트는 취소되어 실행되지 않음
+        assertEquals(3L, count);
+        assertTrue(total.isCancelled());
+        release.countDown();
+        executor.submit(() -> 0L).join();
+        assertFalse(queuedRan.get());
+    }
+
+    @Test
+    public void cancelUnusedCount() throws Exception {
+        executor.submit(this::blocked);
+        AtomicBoolean queuedRan = new AtomicBoolean();
+        CompletableFuture<Long> total = executor.submit(() -> {
+            queuedRan.set(true);
+            return 7L;
+        });
+
+        total.cancel(false);
+        release.countDown();
+        executor.submit(() -> 0L).join();
+
+        assertFalse(queuedRan.get());
+    }
+
+    private long blocked() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return 0L;
+    }
+}
@@ -0,0 +1,81 @@
+package study.querydsl.seed;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 적재기는 배치마다 커밋하므로 롤백되는 테스트 트랜잭션 대신 테스트가 끝나면 지운다.
+ */
+@SpringBootTest
+class MemberSeederTest {
+
+    @Autowired
+    MemberSeeder memberSeeder;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    //벌크 변경 이벤트로 캐시도 같이 비워지도록 JPAQueryFactory로 지움
+    @AfterEach
+    public void after() {
+        transactionTemplate.executeWithoutResult(status -> {
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+    }
+
+    @Test
+    public void seedTest() throws Exception {
+        //when 스레드 2개, 4건씩 커밋
+        memberSeeder.seed(10, 3, 2, 4, 0);
+
+        //then
+        assertEquals(3, count("team"));
+        assertEquals(10, count("member"));
+        assertThat(jdbcTemplate.queryForList("select name from team order by id", String.class))
+                .containsExactly("teamA", "teamB", "team2");
+
+        //skew가 0이면 회원 i는 i % teams 번째 팀
+        List<Integer> membersPerTeam = jdbcTemplate.queryForList(
+                "select count(*) from member m join team t on m.team_id = t.id group by t.id order by t.id", Integer.class);
+        assertThat(membersPerTeam).containsExactly(4, 3, 3);
+    }
+
+    @Test
+    public void restartSequenceTest() throws Exception {
+        //when
+        memberSeeder.seed(10, 3, 1, 100, 0);
+
+        //then 다음 시퀀스 값부터 할당되는 id 구간(값 - allocationSize + 1 ~ 값)이 적재한 id 바로 다음부터 시작
+        long maxTeamId = jdbcTemplate.queryForObject("select max(id) from team", Long.class);
+        long maxMemberId = jdbcTemplate.queryForObject("select max(member_id) from member", Long.class);
+        assertEquals(maxTeamId + 1, nextValue(MemberSeeder.TEAM_SEQUENCE) - MemberSeeder.ID_ALLOCATION_SIZE + 1);
+        assertEquals(maxMemberId + 1, nextValue(MemberSeeder.MEMBER_SEQUENCE) - MemberSeeder.ID_ALLOCATION_SIZE + 1);
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("select count(*) from " + table, Long.class);
+    }
+
+    private long nextValue(String sequence) {
+        return jdbcTemplate.queryForObject("select next value for " + sequence, Long.class);
+    }
+}
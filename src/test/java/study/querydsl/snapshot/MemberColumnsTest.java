@@ -0,0 +1,70 @@
+package study.querydsl.snapshot;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MemberColumnsTest {
+
+    @Test
+    public void usernameDictionaryTest() throws Exception {
+        //given
+        MemberColumns columns = new MemberColumns(0);
+        for (long id = 1; id <= 100; id++) {
+            columns.upsert(id, "member" + id, 10, null);
+        }
+
+        //when 회원명을 바꾸거나 삭제하면 아무도 안쓰는 회원명은 사전에서 빠짐
+        for (long id = 1; id <= 50; id++) {
+            columns.upsert(id, "renamed" + id, 10, null);
+        }
+        for (long id = 51; id <= 100; id++) {
+            columns.remove(id);
+        }
+
+        //then
+        assertEquals(50, columns.usernameCount());
+        assertThat(columns.ids(usernameEq("member1"))).isEmpty();
+        assertThat(columns.ids(usernameEq("renamed1"))).containsExactly(1L);
+        assertThat(columns.ids(usernameStartsWith("member"))).isEmpty();
+        assertThat(columns.ids(usernameStartsWith("renamed1"))).hasSize(11); // renamed1, renamed10 ~ renamed19
+    }
+
+    @Test
+    public void compactRemovedTest() throws Exception {
+        //given
+        MemberColumns columns = new MemberColumns(0);
+        for (long id = 1; id <= 4000; id++) {
+            columns.upsert(id, "member" + id, (int) (id % 100), null);
+        }
+
+        //when 삭제된 행이 1/4을 넘으면 정리
+        for (long id = 1; id <= 4000; id += 2) {
+            columns.remove(id);
+        }
+
+        //then
+        assertThat(columns.size()).isLessThan(4000);
+        MemberColumns.Result all = columns.page(new MemberSearchCondition(), 0, 3);
+        assertEquals(2000, all.total);
+        assertThat(all.content).extracting("memberId").containsExactly(2L, 4L, 6L);
+
+        //정리 후에도 삭제했던 회원을 다시 넣으면 id 순서 자리에 들어감
+        columns.upsert(1, "member1", 1, null);
+        assertThat(columns.page(new MemberSearchCondition(), 0, 2).content).extracting("memberId").containsExactly(1L, 2L);
+    }
+
+    private static MemberSearchCondition usernameEq(String username) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(username);
+        return condition;
+    }
+
+    private static MemberSearchCondition usernameStartsWith(String prefix) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernameStartsWith(prefix);
+        return condition;
+    }
+}
@@ -0,0 +1,181 @@
+package study.querydsl.snapshot;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 스냅샷은 커밋된 변경만 반영하므로 롤백되는 테스트 트랜잭션(@Transactional) 대신
+ * 데이터를 커밋하고 테스트가 끝나면 지운다.
+ */
+@SpringBootTest(properties = "member.snapshot.enabled=true")
+class MemberSnapshotTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberSnapshot snapshot;
+
+    @BeforeEach
+    public void before() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+
+            for (int i = 0; i < 10; i++) {
+                em.persist(new Member("member" + i, i * 10, i % 2 == 0 ? teamA : teamB));
+            }
+            em.persist(new Member("memberWithoutTeam", 100));
+        });
+        snapshot.refresh();
+    }
+
+    @AfterEach
+    public void after() {
+        transactionTemplate.executeWithoutResult(status -> {
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+    }
+
+    @Test
+    public void sameAsDatabase() throws Exception {
+        for (MemberSearchCondition condition : conditions()) {
+            //when
+            Page<MemberTeamDto> fromSnapshot = snapshot.searchPage(condition, PageRequest.of(1, 2));
+            Page<MemberTeamDto> fromDatabase = memberRepository.searchPageDeferredJoin(condition, PageRequest.of(1, 2));
+
+            //then 같은 페이지, 같은 전체 건수
+            assertNotNull(fromSnapshot);
+            assertEquals(fromDatabase.getTotalElements(), fromSnapshot.getTotalElements(), condition.toString());
+            assertThat(fromSnapshot.getContent()).as(condition.toString()).isEqualTo(fromDatabase.getContent());
+            assertThat(snapshot.searchIds(condition)).as(condition.toString()).containsExactlyElementsOf(
+                    memberRepository.searchPageDeferredJoin(condition, PageRequest.of(0, 100)).getContent().stream()
+                            .map(MemberTeamDto::getMemberId)
+                            .collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void applyCommittedChanges() throws Exception {
+        //when
+        transactionTemplate.executeWithoutResult(status -> {
+            Team teamB = em.createQuery("select t from Team t where t.name = 'teamB'", Team.class).getSingleResult();
+            em.persist(new Member("member10", 45, teamB));
+            Member member1 = em.createQuery("select m from Member m where m.username = 'member1'", Member.class)
+                    .getSingleResult();
+            member1.setAge(5);
+            em.remove(em.createQuery("select m from Member m where m.username = 'member3'", Member.class)
+                    .getSingleResult());
+            teamB.setName("teamB2");
+        });
+
+        //then 다시 만들지 않아도 반영됨
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB2");
+        condition.setAgeGoe(10);
+        Page<MemberTeamDto> result = snapshot.searchPage(condition, PageRequest.of(0, 10));
+
+        assertNotNull(result);
+        assertThat(result.getContent()).extracting("username")
+                .containsExactly("member5", "member7", "member9", "member10");
+        assertThat(result.getContent()).extracting("teamName").containsOnly("teamB2");
+    }
+
+    @Test
+    public void fallbackToDatabase() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(95);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            //when 커밋되지 않은 변경이 있는 트랜잭션
+            em.persist(new Member("uncommitted", 99));
+
+            //then 스냅샷 대신 DB에서 조회
+            assertNull(snapshot.searchPage(condition, PageRequest.of(0, 10)));
+            assertThat(memberRepository.searchPageSnapshot(condition, PageRequest.of(0, 10)).getContent())
+                    .extracting("username").containsExactly("memberWithoutTeam", "uncommitted");
+            status.setRollbackOnly();
+        });
+
+        //롤백된 회원은 반영되지 않음
+        assertThat(snapshot.searchPage(condition, PageRequest.of(0, 10)).getContent())
+                .extracting("username").containsExactly("memberWithoutTeam");
+    }
+
+    @Test
+    public void rebuildAfterBulkChange() throws Exception {
+        //when
+        transactionTemplate.executeWithoutResult(status -> queryFactory
+                .update(member)
+                .set(member.age, member.age.add(1))
+                .execute());
+
+        //then 별도 스레드에서 다시 만들때까지 기다림
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(101);
+        long deadline = System.currentTimeMillis() + 5000;
+        Page<MemberTeamDto> result = snapshot.searchPage(condition, PageRequest.of(0, 10));
+        while (result == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            result = snapshot.searchPage(condition, PageRequest.of(0, 10));
+        }
+
+        assertTrue(snapshot.isReady());
+        assertThat(result.getContent()).extracting("username").containsExactly("memberWithoutTeam");
+    }
+
+    private static List<MemberSearchCondition> conditions() {
+        MemberSearchCondition none = new MemberSearchCondition();
+        MemberSearchCondition teamAndAge = new MemberSearchCondition();
+        teamAndAge.setTeamName("teamA");
+        teamAndAge.setAgeGoe(20);
+        teamAndAge.setAgeLoe(80);
+        MemberSearchCondition username = new MemberSearchCondition();
+        username.setUsername("member3");
+        MemberSearchCondition contains = new MemberSearchCondition();
+        contains.setUsernameContains("Team");
+        MemberSearchCondition startsWith = new MemberSearchCondition();
+        startsWith.setUsernameStartsWith("member1");
+        startsWith.setAgeLoe(50);
+        MemberSearchCondition noTeam = new MemberSearchCondition();
+        noTeam.setTeamName("teamC");
+        return Arrays.asList(none, teamAndAge, username, contains, startsWith, noTeam);
+    }
+}
@@ -0,0 +1,162 @@
+package study.querydsl.statistics;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.TeamStatisticsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 통계는 커밋 후에 갱신되므로 롤백되는 테스트 트랜잭션 대신 데이터를 커밋하고 테스트가 끝나면 지운다.
+ */
+@SpringBootTest
+class TeamStatisticsTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    TeamStatistics teamStatistics;
+
+    @AfterEach
+    public void after() {
+        transactionTemplate.executeWithoutResult(status -> {
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+    }
+
+    @Test
+    public void incrementalTest() throws Exception {
+        //given
+        Long[] ids = transactionTemplate.execute(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            Member member1 = new Member("member1", 10, teamA);
+            em.persist(member1);
+            em.persist(new Member("member2", 20, teamA));
+            em.persist(new Member("member3", 30, teamB));
+            return new Long[]{member1.getId(), teamB.getId()};
+        });
+        teamStatistics.findAll(); // 최초 집계
+
+        //when 회원 추가, 나이 변경, 팀 이동, 삭제
+        transactionTemplate.executeWithoutResult(status -> {
+            Team teamB = em.find(Team.class, ids[1]);
+            em.persist(new Member("member4", 40, teamB));
+            Member member1 = em.find(Member.class, ids[0]);
+            member1.setAge(5);
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            Member member1 = em.find(Member.class, ids[0]);
+            member1.setTeam(em.find(Team.class, ids[1]));
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            em.remove(em.createQuery("select m from Member m where m.username = 'member3'", Member.class).getSingleResult());
+        });
+
+        //then teamA: member2(20), teamB: member1(5), member4(40)
+        List<TeamStatisticsDto> stats = teamStatistics.findAll();
+        assertThat(stats).extracting("teamName").containsExactly("teamA", "teamB");
+        assertStats(stats.get(0), 1, 20.0, 20, 20);
+        assertStats(stats.get(1), 2, 22.5, 5, 40);
+    }
+
+    @Test
+    public void rolledBackChangeIgnoredTest() throws Exception {
+        //given
+        transactionTemplate.executeWithoutResult(status -> em.persist(new Team("teamA")));
+        teamStatistics.findAll();
+
+        //when
+        transactionTemplate.executeWithoutResult(status -> {
+            Team teamA = em.createQuery("select t from Team t", Team.class).getSingleResult();
+            em.persist(new Member("member1", 10, teamA));
+            em.flush();
+            status.setRollbackOnly();
+        });
+
+        //then
+        TeamStatisticsDto teamA = teamStatistics.findAll().get(0);
+        assertEquals(0, teamA.getMemberCount());
+        assertNull(teamA.getAverageAge());
+    }
+
+    @Test
+    public void rebuildBeforeAfterCommitListenerTest() throws Exception {
+        //given
+        Long teamId = transactionTemplate.execute(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            em.persist(new Member("member1", 10, teamA));
+            return teamA.getId();
+        });
+        teamStatistics.findAll();
+
+        //when 커밋은 DB에 보이지만 커밋 후 리스너는 아직 실행되지 않은 사이에 다른 스레드가 다시 집계
+        transactionTemplate.executeWithoutResult(status -> {
+            em.persist(new Member("member2", 20, em.find(Team.class, teamId)));
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    teamStatistics.markStale();
+                    CompletableFuture.runAsync(teamStatistics::findAll).join();
+                }
+            });
+        });
+
+        //then 커밋 후 리스너가 같은 회원을 한번 더 더하지 않음
+        assertStats(teamStatistics.findAll().get(0), 2, 15.0, 10, 20);
+    }
+
+    @Test
+    public void bulkUpdateRebuildTest() throws Exception {
+        //given
+        transactionTemplate.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+        });
+        teamStatistics.findAll();
+
+        //when 벌크 연산은 어떤 회원이 바뀌었는지 모르므로 다음 조회때 다시 집계
+        transactionTemplate.executeWithoutResult(status ->
+                queryFactory.update(member).set(member.age, member.age.add(1)).execute());
+
+        //then
+        List<TeamStatisticsDto> stats = teamStatistics.findAll();
+        assertStats(stats.get(0), 2, 16.0, 11, 21);
+    }
+
+    private static void assertStats(TeamStatisticsDto stats, long count, double average, int min, int max) {
+        assertEquals(count, stats.getMemberCount());
+        assertEquals(average, stats.getAverageAge());
+        assertEquals(min, stats.getMinAge());
+        assertEquals(max, stats.getMaxAge());
+    }
+}
@@ -0,0 +1,23 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 테스트 메서드 본문에서 실행된 SQL 수가 value를 넘거나 N+1이 감지되면 테스트를 실패시킨다.
+ * (@BeforeEach에서 실행된 SQL은 세지 않음)
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@ExtendWith(StatementBudgetExtension.class)
+public @interface StatementBudget {
+
+    int value();
+
+    //같은 모양의 select가 이 횟수 이상 실행되면 N+1로 봄
+    int nPlusOneThreshold() default 3;
+}
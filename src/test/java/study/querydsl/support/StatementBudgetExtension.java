@@ -0,0 +1,40 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.platform.commons.support.AnnotationSupport;
+import study.querydsl.monitoring.SqlStatementCounter;
+import study.querydsl.monitoring.StatementScope;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class StatementBudgetExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(StatementBudgetExtension.class);
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) {
+        context.getStore(NAMESPACE).put(context.getUniqueId(), SqlStatementCounter.open(context.getDisplayName()));
+    }
+
+    @Override
+    public void afterTestExecution(ExtensionContext context) {
+        StatementScope scope = context.getStore(NAMESPACE).remove(context.getUniqueId(), StatementScope.class);
+        scope.close();
+
+        StatementBudget budget = AnnotationSupport.findAnnotation(context.getRequiredTestMethod(), StatementBudget.class)
+                .orElseGet(() -> AnnotationSupport.findAnnotation(context.getRequiredTestClass(), StatementBudget.class)
+                        .orElseThrow(IllegalStateException::new));
+
+        Map<String, Integer> repeated = scope.repeatedSelects(budget.nPlusOneThreshold());
+        if (!repeated.isEmpty()) {
+            fail("N+1 detected: " + repeated);
+        }
+        assertTrue(scope.getTotal() <= budget.value(),
+                () -> "Statement budget exceeded: " + scope.getTotal() + " > " + budget.value());
+    }
+}